@@ -0,0 +1,18 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the bytes allocated per operation are reported with the times.
+ * The arguments are those of the JMH command line, for example a regular expression selecting the benchmarks to run:
+ * <code>java -jar target/benchmarks.jar EngineBenchmark</code>
+ **/
+public class Benchmarks{
+
+  public static void main(String[] args) throws Exception{
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+  }
+}
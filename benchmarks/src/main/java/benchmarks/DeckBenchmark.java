@@ -0,0 +1,40 @@
+package benchmarks;
+
+import hanabAI.Card;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of shuffling a deck, as a new stack and into a reused one.
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class DeckBenchmark{
+
+  private final SplittableRandom random = new SplittableRandom(1);
+  private final Stack<Card> deck = Card.shuffledDeck(1);
+
+  @Benchmark
+  public Stack<Card> shuffledDeck(){
+    return Card.shuffledDeck(random);
+  }
+
+  @Benchmark
+  public Stack<Card> shuffleReused(){
+    Card.shuffle(deck, random);
+    return deck;
+  }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import hanabAI.Action;
+import hanabAI.ActionType;
+import hanabAI.Card;
+import hanabAI.IllegalActionException;
+import hanabAI.State;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the State methods that agents and the game runner call on every turn.
+ * Each benchmark starts from the same state, reached by playing random legal moves from a seeded deal,
+ * so the numbers depend only on the number of players and how far into the game the state is.
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class EngineBenchmark{
+
+  /**The number of players in the game**/
+  @Param({"2", "3", "4", "5"})
+  public int players;
+
+  /**The number of moves made before the benchmarked state**/
+  @Param({"0", "20"})
+  public int turns;
+
+  private State state;
+  private Stack<Card> deck;
+  private Action play;
+  private Action colourHint;
+  private Action valueHint;
+  private int[] moves = new int[Action.MAX_MOVES];
+
+  @Setup
+  public void setup() throws IllegalActionException{
+    String[] names = new String[players];
+    for(int i = 0; i<players; i++) names[i] = "Player "+i;
+    for(long seed = 1; state==null; seed++){
+      SplittableRandom r = new SplittableRandom(seed);
+      deck = Card.shuffledDeck(r);
+      State s = new State(names, deck);
+      for(int i = 0; i<turns && !s.gameOver(); i++){
+        int n = s.legalMoves(moves);
+        s = s.nextState(Action.decode(moves[r.nextInt(n)], s), deck);
+      }
+      if(!s.gameOver() && s.getHintTokens()>0) state = s;
+    }
+    int p = state.getNextPlayer();
+    play = new Action(p, state.getName(p), ActionType.PLAY, 0);
+    int n = state.legalMoves(moves);
+    for(int i = 0; i<n; i++){
+      ActionType t = Action.typeOf(moves[i]);
+      if(t==ActionType.HINT_COLOUR && colourHint==null) colourHint = Action.decode(moves[i], state);
+      if(t==ActionType.HINT_VALUE && valueHint==null) valueHint = Action.decode(moves[i], state);
+    }
+  }
+
+  @Benchmark
+  public State nextStateHint() throws IllegalActionException{
+    return state.nextState(colourHint, deck);
+  }
+
+  @Benchmark
+  public State nextStatePlay() throws IllegalActionException{
+    State s = state.nextState(play, deck);
+    deck.push(s.cardAt(play.getPlayer(), 0));//return the drawn card, so every invocation draws the same card
+    return s;
+  }
+
+  @Benchmark
+  public Object cloneState(){
+    return state.clone();
+  }
+
+  @Benchmark
+  public State hideHand() throws IllegalActionException{
+    return state.hideHand(state.getNextPlayer());
+  }
+
+  @Benchmark
+  public boolean legalColourHint() throws IllegalActionException{
+    return state.legalAction(colourHint);
+  }
+
+  @Benchmark
+  public boolean legalValueHint() throws IllegalActionException{
+    return state.legalAction(valueHint);
+  }
+
+  @Benchmark
+  public int legalMoves(){
+    return state.legalMoves(moves);
+  }
+}
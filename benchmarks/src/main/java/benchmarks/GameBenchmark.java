@@ -0,0 +1,96 @@
+package benchmarks;
+
+import agents.Agent21958958;
+import agents.BasicAgent;
+import hanabAI.Agent;
+import hanabAI.Card;
+import hanabAI.Hanabi;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of whole games, in which every seat is taken by the same kind of agent.
+ * Each invocation plays the next deal of a seeded sequence,
+ * either with new agents (game) or with the same agents reset for each game (pooledGame), as Tournament does with ReusableAgents.
+ * Games in which an agent fails are counted separately, as the secondary result failures, so that they are not hidden in the throughput.
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class GameBenchmark{
+
+  /**The number of players in the game**/
+  @Param({"2", "3", "4", "5"})
+  public int players;
+
+  /**The agent in every seat**/
+  @Param({"BasicAgent", "Agent21958958"})
+  public String agent;
+
+  private Supplier<Agent> agents;
+  private final Stack<Card> deck = new Stack<Card>();
+  private long seed;
+  /**The agents reused by pooledGame**/
+  private Agent[] pool;
+
+  /**
+   * The number of games in which an agent failed, reported by JMH alongside the games played.
+   **/
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @org.openjdk.jmh.annotations.State(Scope.Thread)
+  public static class Failures{
+    /**The number of games in which an agent threw an exception in this iteration**/
+    public long failures;
+
+    @Setup(Level.Iteration)
+    public void clear(){failures = 0;}
+  }
+
+  @Setup
+  public void setup(){
+    agents = agent.equals("BasicAgent") ? BasicAgent::new : Agent21958958::new;
+    pool = new Agent[players];
+    for(int i = 0; i<players; i++) pool[i] = agents.get();
+  }
+
+  @Benchmark
+  public int game(Failures f){
+    Agent[] a = new Agent[players];
+    for(int i = 0; i<players; i++) a[i] = agents.get();
+    return play(a, f);
+  }
+
+  @Benchmark
+  public int pooledGame(Failures f){
+    return play(pool, f);
+  }
+
+  //plays the next deal with the given agents, which Hanabi resets if they are ReusableAgents
+  private int play(Agent[] a, Failures f){
+    Card.shuffle(deck, new SplittableRandom(seed++));
+    try{
+      return new Hanabi(a, deck).play();
+    }
+    catch(RuntimeException e){
+      f.failures++;
+      return -1;
+    }
+  }
+}
@@ -1,16 +1,17 @@
 package agents;
 
-import java.util.ArrayList;
-
 import hanabAI.Action;
 import hanabAI.ActionType;
-import hanabAI.Agent;
 import hanabAI.Card;
 import hanabAI.Colour;
+import hanabAI.GameListener;
 import hanabAI.IllegalActionException;
+import hanabAI.ReusableAgent;
 import hanabAI.State;
 
-public class Agent21958958 implements Agent {
+import java.util.Arrays;
+
+public class Agent21958958 implements ReusableAgent, GameListener {
 
 	//true if it is the first turn of the agent, false otherwise
 	private boolean firstAction = true;
@@ -24,10 +25,12 @@ public class Agent21958958 implements Agent {
 	double h;
 	//array containing the indexes of the colours hinted to each player since their last move
 	private Colour[][] lastHintedColours;
-	//array of the colours of the cards still unknown (ie in the deck or in their hand) by the current player, organised by value
-	private ArrayList<ArrayList<Colour>> valueCardsLeftArray;
-	//array of the values of the cards still unknown (ie in the deck or in their hand) by the current player, organised by colour
-	private ArrayList<ArrayList<Integer>> colourCardsLeftArray;
+	//number of cards of each colour (by ordinal) and value (from 1) still unknown (ie in the deck or in their hand) by the current player
+	private int[][] cardsLeftMatrix = new int[5][5];
+	//number of cards of each colour (by ordinal) still unknown by the current player
+	private int[] colourCardsLeftTotal = new int[5];
+	//number of cards of each value (from 1) still unknown by the current player
+	private int[] valueCardsLeftTotal = new int[5];
 	//number of cards left in the deck
 	private int cardsLeft;
 	//array containing the index of the cards played from the hands of the other players since the current player's last move (1 if card was played, 0 otherwise)
@@ -38,10 +41,22 @@ public class Agent21958958 implements Agent {
 	private Colour[][] playerColours;
 	//array containing the value hints that each player has received
 	private int[][] playerValues;
-	//the hands of the players sorted by the order they arrived in their hands
-	private ArrayList<ArrayList<Integer>> playerSortedHands = new ArrayList<>();
+	//the slots of each player's hand sorted by the order their cards arrived in the hand, oldest first,
+	//packed 4 bits per slot with the oldest in the lowest bits
+	private int[] playerSortedHands;
+	//the cards in each player's hand this turn, with the player's own cards null
+	private Card[][] hands;
+	//the value of the next playable card of each colour (by ordinal) this turn, -1 if the firework is complete
+	private int[] playableValues = new int[5];
 	//array listing the colours in alphabetical order for ease of retrieval
 	private Colour[] colours = { Colour.BLUE, Colour.GREEN, Colour.RED, Colour.WHITE, Colour.YELLOW };
+	//the order of the last state the agent has been told of by the game, or -1 if it has missed an action
+	private int told = 0;
+	//the actions the agent has been told of since its last move, and the states they reached, oldest first
+	private Action[] toldActions;
+	private State[] toldStates;
+	//the number of actions the agent has been told of since its last move
+	private int numTold;
 
 	/**
 	 * Default constructor, does nothing.
@@ -57,50 +72,74 @@ public class Agent21958958 implements Agent {
 		numPlayers = s.getPlayers().length;
 
 		numCards = (numPlayers > 3 ? 4 : 5);
-		playerColours = new Colour[numPlayers][numCards];
-		playerValues = new int[numPlayers][numCards];
-		lastHintedColours = new Colour[numPlayers][numCards];
-		recentNewCards = new int[numPlayers][numCards];
-		firstRecentNewCards = new int[numPlayers][numCards];
+		//reuse the arrays of the previous game if it had as many players
+		if (playerColours == null || playerColours.length != numPlayers) {
+			playerColours = new Colour[numPlayers][numCards];
+			playerValues = new int[numPlayers][numCards];
+			lastHintedColours = new Colour[numPlayers][numCards];
+			recentNewCards = new int[numPlayers][numCards];
+			firstRecentNewCards = new int[numPlayers][numCards];
+			playerSortedHands = new int[numPlayers];
+		} else {
+			for (int i = 0; i < numPlayers; i++) {
+				Arrays.fill(playerColours[i], null);
+				Arrays.fill(playerValues[i], 0);
+				Arrays.fill(lastHintedColours[i], null);
+				Arrays.fill(recentNewCards[i], 0);
+				Arrays.fill(firstRecentNewCards[i], 0);
+			}
+		}
 
 		cardsLeft = 50 - numPlayers * numCards;
 		for (int i = 0; i < numPlayers; i++) {
-			playerSortedHands.add(new ArrayList<Integer>());
-
+			playerSortedHands[i] = 0;
 			for (int j = 0; j < numCards; j++) {
-				playerSortedHands.get(i).add(j);
+				playerSortedHands[i] |= j << (4 * j);
 			}
 		}
 
-		valueCardsLeftArray = new ArrayList<ArrayList<Colour>>();
-		for (int i = 1; i < 6; i++) {
-			ArrayList<Colour> temp = new ArrayList<>();
-			int num = (i == 1 ? 3 : (i == 5 ? 1 : 2));
-			for (int j = 0; j < num; j++) {
-				temp.add(Colour.BLUE);
-				temp.add(Colour.GREEN);
-				temp.add(Colour.RED);
-				temp.add(Colour.WHITE);
-				temp.add(Colour.YELLOW);
-			}
-			valueCardsLeftArray.add(temp);
-		}
-
-		colourCardsLeftArray = new ArrayList<ArrayList<Integer>>();
+		Arrays.fill(colourCardsLeftTotal, 0);
+		Arrays.fill(valueCardsLeftTotal, 0);
 		for (int i = 0; i < 5; i++) {
-			ArrayList<Integer> temp = new ArrayList<>();
 			for (int j = 1; j < 6; j++) {
-				for (int k = 0; k < (j == 1 ? 3 : (j == 5 ? 1 : 2)); k++) {
-					temp.add(j);
-				}
+				int num = (j == 1 ? 3 : (j == 5 ? 1 : 2));
+				cardsLeftMatrix[i][j - 1] = num;
+				colourCardsLeftTotal[i] += num;
+				valueCardsLeftTotal[j - 1] += num;
 			}
-			colourCardsLeftArray.add(temp);
 		}
 
 		index = s.getNextPlayer();
 
 	}
 
+	/**
+	 * Forgets the previous game, so that the arrays are reset on the first action of this one
+	 * @param numPlayers the number of players in the game
+	 * @param seat the index of the player's seat
+	 */
+	public void startGame(int numPlayers, int seat) {
+		firstAction = true;
+		told = 0;
+		numTold = 0;
+		if (toldActions != null && toldActions.length != numPlayers) {
+			toldActions = null;
+			toldStates = null;
+		}
+		index = seat;
+	}
+
+	/**
+	 * Lets go of the actions and states kept from the game
+	 */
+	public void endGame() {
+		numTold = 0;
+		if (toldActions != null) {
+			Arrays.fill(toldActions, null);
+			Arrays.fill(toldStates, null);
+		}
+	}
+
 	/**
 	 * Returns the name BaseLine.
 	 * @return the String "BaseLine"
@@ -125,8 +164,15 @@ public class Agent21958958 implements Agent {
 		index = s.getNextPlayer();
 
 		try {
-			//get any hints
-			getHints(s);
+			//get any hints, from the actions the agent has been told of if it has been told of them all
+			if (!firstAction && told == s.getOrder() && numTold == numPlayers) {
+				for (int i = 0; i < numTold; i++) {
+					processAction(toldActions[i], toldStates[i]);
+				}
+			} else {
+				getHints(s);
+			}
+			numTold = 0;
 
 			//evaluation variable: the better the move, the higher this will be
 			h = 0.0;
@@ -134,6 +180,7 @@ public class Agent21958958 implements Agent {
 			//remove all the known cards since the player's last move from the "unknown card" storage arrays 
 			removeCards(s);
 
+			analyse(s);
 			return evaluationFunction(s);
 
 		} catch (IllegalActionException e) {
@@ -177,93 +224,115 @@ public class Agent21958958 implements Agent {
 					removeCards(t);
 				}
 
-				Action a = t.getPreviousAction();
-				if (a.getType() == ActionType.HINT_COLOUR || a.getType() == ActionType.HINT_VALUE) {
-					boolean[] hints = t.getPreviousAction().getHintedCards();
-					boolean hintToFullyID = false;
-					int numHints = 0;
-					int colourHintIndex = -1;
-					for (int j = 0; j < hints.length; j++) {
-						int J = playerSortedHands.get(a.getHintReceiver()).get(j);
-						//if hint given, update player hints arrays
-						if (hints[J]) {
-							if (a.getType() == ActionType.HINT_COLOUR) {
-								//if clear colour hint, add that to lastHintedColours
-								if (playerColours[a.getHintReceiver()][J] == null) {
-									numHints++;
-									colourHintIndex = J;
-									if (playerValues[a.getHintReceiver()][J] != 0) {
-										hintToFullyID = true;
-									}
-								}
-								playerColours[a.getHintReceiver()][J] = a.getColour();
-							} else {
-								playerValues[a.getHintReceiver()][J] = a.getValue();
-							}
-						}
-					}
-					//only add colour hint if it was the only ID'd colour 
-					//and the hint wasn't intended to fully ID another card in hand (which already has a number hint)
-					if (!hintToFullyID && numHints == 1) {
-						lastHintedColours[a.getHintReceiver()][colourHintIndex] = a.getColour();
-					}
-				} else if (a.getType() == ActionType.PLAY || a.getType() == ActionType.DISCARD) {
-					//update sorted hand array
-					for (int j = 0; j < numCards; j++) {
-						if (playerSortedHands.get(a.getPlayer()).get(j) == a.getCard()) {
-							playerSortedHands.get(a.getPlayer()).remove(j);
-							playerSortedHands.get(a.getPlayer()).add(a.getCard());
-							break;
-						}
-					}
-					//update "unknown card" arrays if the player discarded a card
-					if (a.getType() == ActionType.DISCARD && a.getPlayer() == index) {
-						one: for (int r = 0; r < 5; r++) {
-							if (colours[r] == t.getDiscards().peek().getColour()) {
-								for (int u = 0; u < colourCardsLeftArray.get(r).size(); u++) {
-									if (colourCardsLeftArray.get(r).get(u) == t.getDiscards().peek().getValue()) {
-										colourCardsLeftArray.get(r).remove(u);
-										break one;
-									}
-								}
-							}
-						}
-						for (int r = 0; r < valueCardsLeftArray.get(t.getDiscards().peek().getValue() - 1).size(); r++) {
-							if (valueCardsLeftArray.get(t.getDiscards().peek().getValue() - 1).get(r) == t.getDiscards().peek().getColour()) {
-								valueCardsLeftArray.get(t.getDiscards().peek().getValue() - 1).remove(r);
-								break;
+				processAction(t.getPreviousAction(), t);
+			}
+		} catch (IllegalActionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Updates the hint arrays, the sorted hands and the "unknown card" arrays from one action
+	 * @param a the action performed
+	 * @param t the state reached by the action
+	 * @throws IllegalActionException
+	 */
+	public void processAction(Action a, State t) throws IllegalActionException {
+		if (a.getType() == ActionType.HINT_COLOUR || a.getType() == ActionType.HINT_VALUE) {
+			boolean[] hints = t.getPreviousAction().getHintedCards();
+			boolean hintToFullyID = false;
+			int numHints = 0;
+			int colourHintIndex = -1;
+			for (int j = 0; j < hints.length; j++) {
+				int J = sortedSlot(a.getHintReceiver(), j);
+				//if hint given, update player hints arrays
+				if (hints[J]) {
+					if (a.getType() == ActionType.HINT_COLOUR) {
+						//if clear colour hint, add that to lastHintedColours
+						if (playerColours[a.getHintReceiver()][J] == null) {
+							numHints++;
+							colourHintIndex = J;
+							if (playerValues[a.getHintReceiver()][J] != 0) {
+								hintToFullyID = true;
 							}
 						}
+						playerColours[a.getHintReceiver()][J] = a.getColour();
+					} else {
+						playerValues[a.getHintReceiver()][J] = a.getValue();
 					}
-					//update "unknown card" arrays if the player played a card
-					if (a.getType() == ActionType.PLAY && a.getPlayer() == index) {
-						State u = ((State) t.clone()).getPreviousState();
-						for (int d = 0; d < 5; d++) {
-							if (playable(u, colours[d]) != playable(t, colours[d])) {
-								int play = playable(u, colours[d]);
-								for (int e = 0; e < colourCardsLeftArray.get(d).size(); e++) {
-									if (colourCardsLeftArray.get(d).get(e) == play) {
-										colourCardsLeftArray.get(d).remove(e);
-										break;
-									}
-								}
-								for (int r = 0; r < valueCardsLeftArray.get(play - 1).size(); r++) {
-									if (valueCardsLeftArray.get(play - 1).get(r) == colours[d]) {
-										valueCardsLeftArray.get(play - 1).remove(r);
-										break;
-									}
-								}
-							}
-						}
+				}
+			}
+			//only add colour hint if it was the only ID'd colour 
+			//and the hint wasn't intended to fully ID another card in hand (which already has a number hint)
+			if (!hintToFullyID && numHints == 1) {
+				lastHintedColours[a.getHintReceiver()][colourHintIndex] = a.getColour();
+			}
+		} else if (a.getType() == ActionType.PLAY || a.getType() == ActionType.DISCARD) {
+			//update sorted hand array
+			moveToNewest(a.getPlayer(), a.getCard());
+			//update "unknown card" arrays if the player discarded a card
+			if (a.getType() == ActionType.DISCARD && a.getPlayer() == index) {
+				Card discarded = t.getDiscards().peek();
+				removeUnknownCard(discarded.getColour(), discarded.getValue());
+			}
+			//update "unknown card" arrays if the player played a card
+			if (a.getType() == ActionType.PLAY && a.getPlayer() == index) {
+				State u = ((State) t.clone()).getPreviousState();
+				for (int d = 0; d < 5; d++) {
+					if (playable(u, colours[d]) != playable(t, colours[d])) {
+						removeUnknownCard(colours[d], playable(u, colours[d]));
 					}
-					playerColours[a.getPlayer()][a.getCard()] = null;
-					playerValues[a.getPlayer()][a.getCard()] = 0;
-					cardsLeft--;
-					recentNewCards[a.getPlayer()][a.getCard()] = 1;
 				}
 			}
-		} catch (IllegalActionException e) {
-			e.printStackTrace();
+			playerColours[a.getPlayer()][a.getCard()] = null;
+			playerValues[a.getPlayer()][a.getCard()] = 0;
+			cardsLeft--;
+			recentNewCards[a.getPlayer()][a.getCard()] = 1;
+		}
+	}
+
+	/**
+	 * Gives a slot of a player's hand by the age of its card
+	 * @param player the player
+	 * @param i the position of the slot in the order the cards arrived, 0 for the oldest card
+	 * @return the index of the slot in the player's hand
+	 */
+	public int sortedSlot(int player, int i) {
+		return (playerSortedHands[player] >>> (4 * i)) & 15;
+	}
+
+	/**
+	 * Moves a slot of a player's hand to the end of the sorted hand, when a new card arrives in it
+	 * @param player the player
+	 * @param slot the index of the slot in the player's hand
+	 */
+	public void moveToNewest(int player, int slot) {
+		int sorted = playerSortedHands[player];
+		for (int j = 0; j < numCards; j++) {
+			if (((sorted >>> (4 * j)) & 15) == slot) {
+				int older = sorted & ((1 << (4 * j)) - 1);
+				int newer = sorted >>> (4 * (j + 1));
+				playerSortedHands[player] = older | (newer << (4 * j)) | (slot << (4 * (numCards - 1)));
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the actions made since the player's last move, to be taken into account when the player next moves
+	 * @param a the action performed
+	 * @param next the state reached by the action, as seen by the player
+	 */
+	public void actionPerformed(Action a, State next) {
+		told = (next.getOrder() == told + 1 ? told + 1 : -1);
+		if (toldActions == null) {
+			toldActions = new Action[next.getPlayers().length];
+			toldStates = new State[next.getPlayers().length];
+		}
+		if (!firstAction && numTold < toldActions.length) {
+			toldActions[numTold] = a;
+			toldStates[numTold] = next;
+			numTold++;
 		}
 	}
 
@@ -275,34 +344,48 @@ public class Agent21958958 implements Agent {
 		for (int i = 0; i < recentNewCards.length; i++) {
 			for (int j = 0; j < recentNewCards[i].length; j++) {
 				if ((recentNewCards[i][j] == 1 || firstRecentNewCards[i][j] == 1) && i != index && s.getHand(i)[j] != null) {
-					for (int k = 0; k < 5; k++) {
-						if (k + 1 == s.getHand(i)[j].getValue()) {
-							int valueCardSize = valueCardsLeftArray.get(k).size();
-							x: for (int m = 0; m < valueCardSize; m++) {
-								if (valueCardsLeftArray.get(k).get(m) == s.getHand(i)[j].getColour()) {
-									valueCardsLeftArray.get(k).remove(m);
-									break x;
-								}
-							}
-						}
-
-						if (colours[k] == s.getHand(i)[j].getColour()) {
-							int colourCardSize = colourCardsLeftArray.get(k).size();
-							y: for (int m = 0; m < colourCardSize; m++) {
-								if (colourCardsLeftArray.get(k).get(m) == s.getHand(i)[j].getValue()) {
-									colourCardsLeftArray.get(k).remove(m);
-									recentNewCards[i][j] = 0;
-									firstRecentNewCards[i][j] = 0;
-									break y;
-								}
-							}
-						}
+					Card card = s.getHand(i)[j];
+					if (removeUnknownCard(card.getColour(), card.getValue())) {
+						recentNewCards[i][j] = 0;
+						firstRecentNewCards[i][j] = 0;
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Removes a card from the "unknown card" counts, if any cards of its colour and value are left
+	 * @param colour the colour of the card
+	 * @param value the value of the card
+	 * @return true if the card was removed, false if there were none left
+	 */
+	public boolean removeUnknownCard(Colour colour, int value) {
+		if (cardsLeftMatrix[colour.ordinal()][value - 1] == 0) {
+			return false;
+		}
+		cardsLeftMatrix[colour.ordinal()][value - 1]--;
+		colourCardsLeftTotal[colour.ordinal()]--;
+		valueCardsLeftTotal[value - 1]--;
+		return true;
+	}
+
+	/**
+	 * Records the parts of the current state that the rules look at, so that each is worked out once per turn
+	 * @param s the current state of the game
+	 */
+	public void analyse(State s) {
+		if (hands == null || hands.length != numPlayers) {
+			hands = new Card[numPlayers][];
+		}
+		for (int i = 0; i < numPlayers; i++) {
+			hands[i] = s.getHand(i);
+		}
+		for (int i = 0; i < 5; i++) {
+			playableValues[colours[i].ordinal()] = playable(s, colours[i]);
+		}
+	}
+
 	/**
 	 * Determines which action to take based on the current state of the game a set of pre-determined rules
 	 * @param s the current state of the game
@@ -328,16 +411,16 @@ public class Agent21958958 implements Agent {
 				//if none discarded, discard the most worthless card
 				if (h == 0.0) {
 					for (int i = 0; i < numCards; i++) {
-						int I = playerSortedHands.get(index).get(i);
+						int I = sortedSlot(index, i);
 						int valueHint = playerValues[index][I];
-						if (valueHint != 0 && valueCardsLeftArray.get(valueHint - 1).size() != 1) {
+						if (valueHint != 0 && numValueCardsLeft(valueHint) != 1) {
 							h = 3;
 							action = new Action(index, toString(), ActionType.DISCARD, I);
 						}
 					}
 					if (h == 0.0) {
 						h = 2;
-						action = new Action(index, toString(), ActionType.DISCARD, playerSortedHands.get(index).get(0));
+						action = new Action(index, toString(), ActionType.DISCARD, sortedSlot(index, 0));
 					}
 				}
 			} else if (s.getHintTokens() == 1) {
@@ -359,16 +442,10 @@ public class Agent21958958 implements Agent {
 
 			//***********PLAY************
 			for (int i = 0; i < numCards; i++) {
-				int I = playerSortedHands.get(index).get(i);
+				int I = sortedSlot(index, i);
 				Colour colourHint = playerColours[index][I];
 				int valueHint = playerValues[index][I];
 
-				ArrayList<Integer> colourCards = new ArrayList<>();
-				if (colourHint != null)
-					colourCards = colourCardsLeft(colourHint);
-				ArrayList<Colour> valueCards = new ArrayList<>();
-				if (valueHint != 0)
-					valueCards = valueCardsLeft(valueHint);
 				//PRIORITY: 18
 				//play the card IF: 
 				//card is known and is playable OR
@@ -376,10 +453,10 @@ public class Agent21958958 implements Agent {
 				//the value is hinted but not the colour and there is only one unknown card of that value and it is playable OR
 				//the value is hinted and it is playable for any possible colours for that value
 				if (18 > h) {
-					if (colourHint != null && valueHint != 0 && playable(s, colourHint) == valueHint
-							|| (colourHint != null && valueHint == 0 && colourCards.size() == 1 && playable(s, colourHint) == colourCards.get(0))
-							|| (valueHint != 0 && colourHint == null && ((valueCards.size() == 1 && playable(s, valueCards.get(0)) == valueHint)
-									|| allPlayable(s, valueHint, valueCards)))) {
+					if (colourHint != null && valueHint != 0 && playable(colourHint) == valueHint
+							|| (colourHint != null && valueHint == 0 && numColourCardsLeft(colourHint) == 1 && playable(colourHint) == onlyValueLeft(colourHint))
+							|| (valueHint != 0 && colourHint == null && ((numValueCardsLeft(valueHint) == 1 && playable(onlyColourLeft(valueHint)) == valueHint)
+									|| allPlayable(s, valueHint)))) {
 						h = 18;
 						action = new Action(index, toString(), ActionType.PLAY, I);
 					}
@@ -389,7 +466,7 @@ public class Agent21958958 implements Agent {
 				//play the card IF
 				//clear colour hint was given (and if card value is known, check it's playable)
 				if (lastHintedColours[index][I] != null && 17 > h
-						&& (playerValues[index][I] == 0 || (playerValues[index][I] != 0 && playable(s, playerColours[index][I]) == playerValues[index][I]))) {
+						&& (playerValues[index][I] == 0 || (playerValues[index][I] != 0 && playable(playerColours[index][I]) == playerValues[index][I]))) {
 					h = 17;
 					action = new Action(index, toString(), ActionType.PLAY, I);
 				}
@@ -403,7 +480,7 @@ public class Agent21958958 implements Agent {
 					int[] numOnes = new int[numPlayers];
 					for (int i = 0; i < numPlayers; i++) {
 						for (int j = 0; j < numCards; j++) {
-							if (i != index && s.getHand(i)[j].getValue() == 1) {
+							if (i != index && hands[i][j].getValue() == 1) {
 								numOnes[i] = numOnes[i] + 1;
 							}
 						}
@@ -420,7 +497,7 @@ public class Agent21958958 implements Agent {
 						h = 20;
 						boolean[] val = new boolean[numCards];
 						for (int i = 0; i < val.length; i++) {
-							val[i] = 1 == s.getHand(ind)[i].getValue();
+							val[i] = 1 == hands[ind][i].getValue();
 						}
 						action = new Action(index, toString(), ActionType.HINT_VALUE, ind, val, 1);
 					}
@@ -436,9 +513,9 @@ public class Agent21958958 implements Agent {
 							h = 19;
 							boolean[] val = new boolean[numCards];
 							for (int i = 0; i < val.length; i++) {
-								val[i] = s.getHand(nextPlayer)[discard].getValue() == s.getHand(nextPlayer)[i].getValue();
+								val[i] = hands[nextPlayer][discard].getValue() == hands[nextPlayer][i].getValue();
 							}
-							action = new Action(index, toString(), ActionType.HINT_VALUE, nextPlayer, val, s.getHand(nextPlayer)[discard].getValue());
+							action = new Action(index, toString(), ActionType.HINT_VALUE, nextPlayer, val, hands[nextPlayer][discard].getValue());
 						}
 					}
 				}
@@ -449,9 +526,9 @@ public class Agent21958958 implements Agent {
 				//if the next player can play a card they know, skip giving them a hint and give hint to next player
 				if(numPlayers != 2) {					
 					for (int i = 0; i < numCards; i++) {
-						int I = playerSortedHands.get(nextPlayer).get(i);
+						int I = sortedSlot(nextPlayer, i);
 						if (playerColours[nextPlayer][I] != null && playerValues[nextPlayer][I] != 0
-								&& s.getHand(nextPlayer)[I].getValue() == playable(s, s.getHand(nextPlayer)[I].getColour())) {
+								&& hands[nextPlayer][I].getValue() == playable(hands[nextPlayer][I].getColour())) {
 							skipNextPlayer = true;
 						}
 					}
@@ -459,34 +536,34 @@ public class Agent21958958 implements Agent {
 				int player = skipNextPlayer ? ((nextPlayer + 1) % numPlayers) : nextPlayer;
 				if (15 > h) {
 					for (int i = 0; i < numCards; i++) {
-						int I = playerSortedHands.get(player).get(i);
+						int I = sortedSlot(player, i);
 						//colour hint the card IF
 						//not colour hinted and is playable AND
 						//it'll be the only one of that colour to be revealed or it has a number hint
 						if (playerColours[player][I] == null
-								&& s.getHand(player)[I].getValue() == playable(s, s.getHand(player)[I].getColour())
+								&& hands[player][I].getValue() == playable(hands[player][I].getColour())
 								&& (playerValues[player][I] != 0
-										|| numColouredCards(s, player, s.getHand(player)[I].getColour())
-												- numKnownColouredCards(player, s.getHand(player)[I].getColour()) == 1)) {
+										|| numColouredCards(s, player, hands[player][I].getColour())
+												- numKnownColouredCards(player, hands[player][I].getColour()) == 1)) {
 							h = 15;
 							boolean[] col = new boolean[numCards];
 							for (int j = 0; j < col.length; j++) {
-								col[j] = s.getHand(player)[I].getColour() == s.getHand(player)[j].getColour();
+								col[j] = hands[player][I].getColour() == hands[player][j].getColour();
 							}
-							action = new Action(index, toString(), ActionType.HINT_COLOUR, player, col, s.getHand(player)[I].getColour());
+							action = new Action(index, toString(), ActionType.HINT_COLOUR, player, col, hands[player][I].getColour());
 						}
 
 						//number hint the card IF
 						//it has a colour hint but no value hint and is playable AND
 						//the colour hint isn't a recent one: ie wasn't given to it before they've had a chance to act on it
 						if (playerColours[player][I] != null && playerValues[player][I] == 0
-								&& playable(s, playerColours[player][I]) == s.getHand(player)[I].getValue() && lastHintedColours[player][I] == null) {
+								&& playable(playerColours[player][I]) == hands[player][I].getValue() && lastHintedColours[player][I] == null) {
 							h = 15;
 							boolean[] val = new boolean[numCards];
 							for (int j = 0; j < val.length; j++) {
-								val[j] = s.getHand(player)[I].getValue() == s.getHand(player)[j].getValue();
+								val[j] = hands[player][I].getValue() == hands[player][j].getValue();
 							}
-							action = new Action(index, toString(), ActionType.HINT_VALUE, player, val, s.getHand(player)[I].getValue());
+							action = new Action(index, toString(), ActionType.HINT_VALUE, player, val, hands[player][I].getValue());
 						}
 					}
 				}
@@ -495,15 +572,15 @@ public class Agent21958958 implements Agent {
 				//IF not colour hinted and it is playable, colour hint that card
 				if (10 > h) {
 					for (int i = 0; i < numCards; i++) {
-						int I = playerSortedHands.get(nextPlayer).get(i);
+						int I = sortedSlot(nextPlayer, i);
 						if (playerColours[nextPlayer][I] == null
-								&& s.getHand(nextPlayer)[I].getValue() == playable(s, s.getHand(nextPlayer)[I].getColour())) {
+								&& hands[nextPlayer][I].getValue() == playable(hands[nextPlayer][I].getColour())) {
 							h = 10;
 							boolean[] col = new boolean[numCards];
 							for (int j = 0; j < col.length; j++) {
-								col[j] = s.getHand(nextPlayer)[I].getColour() == s.getHand(nextPlayer)[j].getColour();
+								col[j] = hands[nextPlayer][I].getColour() == hands[nextPlayer][j].getColour();
 							}
-							action = new Action(index, toString(), ActionType.HINT_COLOUR, nextPlayer, col, s.getHand(nextPlayer)[I].getColour());
+							action = new Action(index, toString(), ActionType.HINT_COLOUR, nextPlayer, col, hands[nextPlayer][I].getColour());
 						}
 					}
 				}
@@ -518,9 +595,9 @@ public class Agent21958958 implements Agent {
 							h = 6;
 							boolean[] val = new boolean[numCards];
 							for (int j = 0; j < val.length; j++) {
-								val[j] = s.getHand(player)[discard].getValue() == s.getHand(player)[j].getValue();
+								val[j] = hands[player][discard].getValue() == hands[player][j].getValue();
 							}
-							action = new Action(index, toString(), ActionType.HINT_VALUE, player, val, s.getHand(player)[discard].getValue());
+							action = new Action(index, toString(), ActionType.HINT_VALUE, player, val, hands[player][discard].getValue());
 						}
 					}
 				}
@@ -539,9 +616,9 @@ public class Agent21958958 implements Agent {
 									h = (s.getHintTokens() == 1? 13 : 5);
 									boolean[] val = new boolean[numCards];
 									for (int j = 0; j < val.length; j++) {
-										val[j] = s.getHand(playerIndex)[discard].getValue() == s.getHand(playerIndex)[j].getValue();
+										val[j] = hands[playerIndex][discard].getValue() == hands[playerIndex][j].getValue();
 									}
-									action = new Action(index, toString(), ActionType.HINT_VALUE, playerIndex, val, s.getHand(playerIndex)[discard].getValue());
+									action = new Action(index, toString(), ActionType.HINT_VALUE, playerIndex, val, hands[playerIndex][discard].getValue());
 								}
 							}
 						}
@@ -554,7 +631,7 @@ public class Agent21958958 implements Agent {
 				if (1 > h) {
 					int[] frequency = new int[5];
 					for (int i = 0; i < numCards; i++) {
-						frequency[s.getHand(nextPlayer)[i].getValue() - 1] += (playerValues[nextPlayer][i] != 0 ? 0 : 1);
+						frequency[hands[nextPlayer][i].getValue() - 1] += (playerValues[nextPlayer][i] != 0 ? 0 : 1);
 					}
 					int greatest = 0;
 					for (int i = 0; i < 5; i++) {
@@ -563,7 +640,7 @@ public class Agent21958958 implements Agent {
 					}
 					boolean[] val = new boolean[numCards];
 					for (int j = 0; j < val.length; j++) {
-						val[j] = greatest == s.getHand(nextPlayer)[j].getValue();
+						val[j] = greatest == hands[nextPlayer][j].getValue();
 					}
 					action = new Action(index, toString(), ActionType.HINT_VALUE, nextPlayer, val, greatest);
 				}
@@ -578,13 +655,13 @@ public class Agent21958958 implements Agent {
 			//if the player's last turn
 			//*******PLAY******
 			for (int i = 0; i < numCards; i++) {
-				int I = playerSortedHands.get(index).get(i);
+				int I = sortedSlot(index, i);
 				Colour colourHint = playerColours[index][I];
 				int valueHint = playerValues[index][I];
 
 				//PRIORITY: 8 or 5
 				//play the card IF card is known and is playable
-				if (colourHint != null && valueHint != 0 && playable(s, colourHint) == valueHint) {
+				if (colourHint != null && valueHint != 0 && playable(colourHint) == valueHint) {
 					int hValue = ((searchGuaranteed(index, valueHint, colourHint) != null) ? 8 : 5);
 					if (hValue > h) {
 						h = hValue;
@@ -595,7 +672,7 @@ public class Agent21958958 implements Agent {
 				//PRIORITY: 7 or 4
 				//play the card IF clear colour hint was given (and if card value is known, check it's playable)
 				if (lastHintedColours[index][I] != null
-						&& (playerValues[index][I] == 0 || (playerValues[index][I] != 0 && playable(s, playerColours[index][I]) == playerValues[index][I]))) {
+						&& (playerValues[index][I] == 0 || (playerValues[index][I] != 0 && playable(playerColours[index][I]) == playerValues[index][I]))) {
 					int hValue = ((searchGuaranteed(index, valueHint, colourHint) != null) ? 7 : 4);
 					if (hValue > h) {
 						h = hValue;
@@ -610,55 +687,55 @@ public class Agent21958958 implements Agent {
 				for (int c = 0; c < s.getFinalActionIndex() - s.getOrder(); c++) {
 					int i = (index + c + 1) % numPlayers;
 					for (int j = 0; j < numCards; j++) {
-						int J = playerSortedHands.get(i).get(j);
+						int J = sortedSlot(i, j);
 						//PRIORITY: 6 or 3
 						//hint the card IF
 						//not colour hinted and it is playable AND 
 						//	it'll be the only one of that colour to be revealed or it has a number 
 						//OR if it has a colour hint but no value hint
 						if ((playerColours[i][J] == null
-								&& s.getHand(i)[J].getValue() == playable(s, s.getHand(i)[J].getColour())
+								&& hands[i][J].getValue() == playable(hands[i][J].getColour())
 								&& (playerValues[i][J] != 0
-										|| numColouredCards(s, i, s.getHand(i)[J].getColour())
-												- numKnownColouredCards(i, s.getHand(i)[J].getColour()) == 1))
+										|| numColouredCards(s, i, hands[i][J].getColour())
+												- numKnownColouredCards(i, hands[i][J].getColour()) == 1))
 								|| (playerColours[i][J] != null && playerValues[i][J] == 0
-										&& playable(s, playerColours[i][J]) == s.getHand(i)[J].getValue())) {
+										&& playable(playerColours[i][J]) == hands[i][J].getValue())) {
 							if (3 > h) {
 								if (playerColours[i][J] == null) {
 									h = 3;
 									boolean[] col = new boolean[numCards];
 									for (int k = 0; k < col.length; k++) {
-										col[k] = s.getHand(i)[J].getColour() == s.getHand(i)[k].getColour();
+										col[k] = hands[i][J].getColour() == hands[i][k].getColour();
 									}
-									action = new Action(index, toString(), ActionType.HINT_COLOUR, i, col, s.getHand(i)[J].getColour());
+									action = new Action(index, toString(), ActionType.HINT_COLOUR, i, col, hands[i][J].getColour());
 								} else {
 									h = 3;
 									boolean[] val = new boolean[numCards];
 									for (int k = 0; k < val.length; k++) {
-										val[k] = s.getHand(i)[J].getValue() == s.getHand(i)[k].getValue();
+										val[k] = hands[i][J].getValue() == hands[i][k].getValue();
 									}
-									action = new Action(index, toString(), ActionType.HINT_VALUE, i, val, s.getHand(i)[J].getValue());
+									action = new Action(index, toString(), ActionType.HINT_VALUE, i, val, hands[i][J].getValue());
 								}
 							}
 							//hint this card IF there is a card in a later players' hand that is playable if this card is played
 							if (6 > h) {
 								if (c < numPlayers - 1) {
-									int[] temp = searchGuaranteed(i, s.getHand(i)[J].getValue(), s.getHand(i)[J].getColour());
+									int[] temp = searchGuaranteed(i, hands[i][J].getValue(), hands[i][J].getColour());
 									if (temp != null) {
 										h = 6;
 										if (playerColours[i][J] == null) {
 											boolean[] col = new boolean[numCards];
 											for (int k = 0; k < col.length; k++) {
-												col[k] = s.getHand(i)[J].getColour() == s.getHand(i)[k].getColour();
+												col[k] = hands[i][J].getColour() == hands[i][k].getColour();
 											}
-											action = new Action(index, toString(), ActionType.HINT_COLOUR, i, col, s.getHand(i)[J].getColour());
+											action = new Action(index, toString(), ActionType.HINT_COLOUR, i, col, hands[i][J].getColour());
 
 										} else {
 											boolean[] val = new boolean[numCards];
 											for (int k = 0; k < val.length; k++) {
-												val[k] = s.getHand(i)[J].getValue() == s.getHand(i)[k].getValue();
+												val[k] = hands[i][J].getValue() == hands[i][k].getValue();
 											}
-											action = new Action(index, toString(), ActionType.HINT_VALUE, i, val, s.getHand(i)[J].getValue());
+											action = new Action(index, toString(), ActionType.HINT_VALUE, i, val, hands[i][J].getValue());
 										}
 									}
 								}
@@ -674,7 +751,7 @@ public class Agent21958958 implements Agent {
 				for (int i = 0; i < numCards; i++) {
 					if (s.getFinalActionIndex() - s.getOrder() + 1 < s.getFuseTokens()
 							&& playerColours[index][i] != null && playerValues[index][i] == 0
-							&& playable(s, playerColours[index][i]) != -1) {
+							&& playable(playerColours[index][i]) != -1) {
 						h = 2;
 						action = new Action(index, toString(), ActionType.PLAY, i);
 					}
@@ -693,7 +770,7 @@ public class Agent21958958 implements Agent {
 				//last resort, discard a card
 				if (1 > h) {
 					h = 1;
-					action = new Action(index, toString(), ActionType.DISCARD, playerSortedHands.get(index).get(0));
+					action = new Action(index, toString(), ActionType.DISCARD, sortedSlot(index, 0));
 				}
 			}
 		}
@@ -706,15 +783,14 @@ public class Agent21958958 implements Agent {
 	}
 
 	/**
-	 * Returns true if the value given is playable for all the colours given 
+	 * Returns true if the value given is playable for all the colours of the unknown cards with that value
 	 * @param s the current state
 	 * @param value the value to check if they're all playable
-	 * @param colours the colours to check the playability of
-	 * @return true if the value is playable for all the colours given, false otherwise
+	 * @return true if the value is playable for all the colours it could be, false otherwise
 	 */
-	public boolean allPlayable(State s, int value, ArrayList<Colour> colours) {
-		for (int i = 0; i < colours.size(); i++) {
-			if (playable(s, colours.get(i)) != value) {
+	public boolean allPlayable(State s, int value) {
+		for (int i = 0; i < 5; i++) {
+			if (cardsLeftMatrix[colours[i].ordinal()][value - 1] > 0 && playable(colours[i]) != value) {
 				return false;
 			}
 		}
@@ -722,28 +798,49 @@ public class Agent21958958 implements Agent {
 	}
 
 	/**
-	 * For an unknown card with only a number hint, it finds all the possible colours that the given number could be
+	 * For an unknown card with only a number hint, finds the number of cards that it could be
 	 * @param number the hinted number
-	 * @return an array of the possible colours that the card could be
+	 * @return the number of unknown cards with that number
 	 */
-	public ArrayList<Colour> valueCardsLeft(int number) {
-		return valueCardsLeftArray.get(number - 1);
+	public int numValueCardsLeft(int number) {
+		return valueCardsLeftTotal[number - 1];
 	}
 
 	/**
-	 * For an unknown card with only a colour hint, it finds all the possible numbers that the card with that number could be
+	 * For an unknown card with only a colour hint, finds the number of cards that it could be
 	 * @param colour the hinted colour
-	 * @return an array of the possible numbers that the card could be
+	 * @return the number of unknown cards of that colour
 	 */
-	public ArrayList<Integer> colourCardsLeft(Colour colour) {
-		int colourIndex = -1;
+	public int numColourCardsLeft(Colour colour) {
+		return colourCardsLeftTotal[colour.ordinal()];
+	}
+
+	/**
+	 * For an unknown card with only a number hint, finds a colour that the card could be
+	 * @param number the hinted number
+	 * @return the first colour of the unknown cards with that number, null if there are none
+	 */
+	public Colour onlyColourLeft(int number) {
 		for (int i = 0; i < 5; i++) {
-			if (colours[i] == colour) {
-				colourIndex = i;
-				break;
+			if (cardsLeftMatrix[colours[i].ordinal()][number - 1] > 0) {
+				return colours[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * For an unknown card with only a colour hint, finds a number that the card could be
+	 * @param colour the hinted colour
+	 * @return the lowest number of the unknown cards of that colour, -1 if there are none
+	 */
+	public int onlyValueLeft(Colour colour) {
+		for (int i = 0; i < 5; i++) {
+			if (cardsLeftMatrix[colour.ordinal()][i] > 0) {
+				return i + 1;
 			}
 		}
-		return colourCardsLeftArray.get(colourIndex);
+		return -1;
 	}
 
 	/**
@@ -753,13 +850,7 @@ public class Agent21958958 implements Agent {
 	 * @return an integer which is the number of cards left of the given colour and number
 	 */
 	public int numCardsLeft(Colour colour, int number) {
-		int count = 0;
-		for (int i = 0; i < valueCardsLeft(number).size(); i++) {
-			if (valueCardsLeft(number).get(i) == colour) {
-				count++;
-			}
-		}
-		return count;
+		return cardsLeftMatrix[colour.ordinal()][number - 1];
 	}
 
 	/**
@@ -792,16 +883,16 @@ public class Agent21958958 implements Agent {
 	public int checkDiscardVital(State s, int player, boolean checkFirst) {
 		boolean safeDiscard = false;
 		for (int i = 0; i < numCards; i++) {
-			int I = playerSortedHands.get(player).get(i);
+			int I = sortedSlot(player, i);
 			Colour colourHint = playerColours[player][I];
 			int valueHint = playerValues[player][I];
 			if (colourHint == null && valueHint == 0 && (checkFirst ? !safeDiscard : true)) {
-				if (s.getHand(player)[I].getValue() == 5 || playable(s, s.getHand(player)[I].getColour()) == s.getHand(player)[I].getValue()
-						|| (numCardsLeft(s.getHand(player)[I].getColour(), s.getHand(player)[I].getValue())
-								+ numCardsInHands(s, s.getHand(player)[I].getColour(), s.getHand(player)[I].getValue())) == 1
-								&& playable(s, s.getHand(player)[I].getColour()) <= s.getHand(player)[I].getValue()) {
-					if ((numCardsLeft(s.getHand(player)[I].getColour(), s.getHand(player)[I].getValue())
-							+ numCardsInHands(s, s.getHand(player)[I].getColour(), s.getHand(player)[I].getValue())) == 1) {
+				if (hands[player][I].getValue() == 5 || playable(hands[player][I].getColour()) == hands[player][I].getValue()
+						|| (numCardsLeft(hands[player][I].getColour(), hands[player][I].getValue())
+								+ numCardsInHands(s, hands[player][I].getColour(), hands[player][I].getValue())) == 1
+								&& playable(hands[player][I].getColour()) <= hands[player][I].getValue()) {
+					if ((numCardsLeft(hands[player][I].getColour(), hands[player][I].getValue())
+							+ numCardsInHands(s, hands[player][I].getColour(), hands[player][I].getValue())) == 1) {
 					}
 					return I;
 				}
@@ -823,7 +914,8 @@ public class Agent21958958 implements Agent {
 		for (int i = 0; i < numPlayers; i++) {
 			if (i != index) {
 				for (int j = 0; j < numCards; j++) {
-					if (s.getHand(i)[j].getColour() == colour && s.getHand(i)[j].getValue() == value) {
+					Card card = hands[i][j];
+					if (card.getColour() == colour && card.getValue() == value) {
 						num++;
 					}
 				}
@@ -842,7 +934,8 @@ public class Agent21958958 implements Agent {
 	public int numColouredCards(State s, int player, Colour colour) {
 		int numColour = 0;
 		for (int i = 0; i < numCards; i++) {
-			if (s.getHand(player)[i].getColour() != null && s.getHand(player)[i].getColour() == colour) {
+			Colour cardColour = hands[player][i].getColour();
+			if (cardColour != null && cardColour == colour) {
 				numColour++;
 			}
 		}
@@ -876,12 +969,12 @@ public class Agent21958958 implements Agent {
 	public Action discardEvaluation(State s, int h1, int h2) throws IllegalActionException {
 		Action discard = null;
 		for (int i = 0; i < numCards; i++) {
-			int I = playerSortedHands.get(index).get(i);
+			int I = sortedSlot(index, i);
 			Colour colourHint = playerColours[index][I];
 			int valueHint = playerValues[index][I];
 
 			//if card is known exactly and is useless, then discard it 
-			if (colourHint != null && valueHint != 0 && playable(s, colourHint) >= valueHint) {
+			if (colourHint != null && valueHint != 0 && playable(colourHint) >= valueHint) {
 				if (h1 > h) {
 					h = h1;
 					discard = new Action(index, toString(), ActionType.DISCARD, I);
@@ -892,7 +985,7 @@ public class Agent21958958 implements Agent {
 			if (valueHint != 0) {
 				boolean ret = true;
 				for (int j = 0; j < 5; j++) {
-					if (playable(s, colours[j]) <= valueHint) {
+					if (playable(colours[j]) <= valueHint) {
 						ret = false;
 					}
 				}
@@ -905,7 +998,7 @@ public class Agent21958958 implements Agent {
 			}
 
 			//if the colour is known and that colour firework is complete, discard it
-			if (colourHint != null && playable(s, colourHint) == -1 && h1 > h) {
+			if (colourHint != null && playable(colourHint) == -1 && h1 > h) {
 				h = h1;
 				discard = new Action(index, toString(), ActionType.DISCARD, I);
 			}
@@ -929,6 +1022,15 @@ public class Agent21958958 implements Agent {
 		return discard;
 	}
 
+	/**
+	 * Returns the value of the next playable card of the given colour in the current state, as recorded by analyse
+	 * @param c the colour to check the next playable card of
+	 * @return the value of the next playable card of the given colour, -1 if the firework is complete
+	 */
+	public int playable(Colour c) {
+		return playableValues[c.ordinal()];
+	}
+
 	/**
 	 * **Copied from BasicAgent**
 	 * Returns the value of the next playable card of the given colour
@@ -937,10 +1039,10 @@ public class Agent21958958 implements Agent {
 	 * @return the value of the next playable card of the given colour
 	 */
 	public int playable(State s, Colour c) {
-		java.util.Stack<Card> fw = s.getFirework(c);
-		if (fw.size() == 5)
+		int height = s.fireworkHeight(c);
+		if (height == 5)
 			return -1;
 		else
-			return fw.size() + 1;
+			return height + 1;
 	}
 }
@@ -13,13 +13,15 @@ import hanabAI.*;
  *   otherwise discard a random card.
  *@author Tim French 
  **/
-public class BasicAgent implements Agent{
+public class BasicAgent implements ReusableAgent, GameListener{
 
   private Colour[] colours;
   private int[] values;
   private boolean firstAction = true;
   private int numPlayers;
   private int index;
+  /**The order of the last state this agent has been told of, or -1 if it has missed an action**/
+  private int told = 0;
 
   /**
    * Default constructor, does nothing.
@@ -27,23 +29,44 @@ public class BasicAgent implements Agent{
   public BasicAgent(){}
 
   /**
-   * Initialises variables on the first call to do action.
+   * Initialises variables on the first call to do action, if the game was not started with startGame.
    * @param s the State of the game at the first action
    **/
   public void init(State s){
-    numPlayers = s.getPlayers().length;
-    if(numPlayers>3){
-      colours = new Colour[4];
-      values = new int[4];
+    reset(s.getPlayers().length, s.getNextPlayer());
+  }
+
+  //sets up the arrays for a game, reusing those of the previous game if the hands are the same size
+  private void reset(int numPlayers, int seat){
+    this.numPlayers = numPlayers;
+    int numCards = numPlayers>3?4:5;
+    if(colours==null || colours.length!=numCards){
+      colours = new Colour[numCards];
+      values = new int[numCards];
     }
     else{
-      colours = new Colour[5];
-      values = new int[5];
+      java.util.Arrays.fill(colours, null);
+      java.util.Arrays.fill(values, 0);
     }
-    index = s.getNextPlayer();
+    index = seat;
     firstAction = false;
   }
 
+  /**
+   * Forgets the previous game and sets up the arrays for this one, so that hints can be recorded before the agent's first action.
+   * @param numPlayers the number of players in the game
+   * @param seat the index of this agent's seat
+   **/
+  public void startGame(int numPlayers, int seat){
+    reset(numPlayers, seat);
+    told = 0;
+  }
+
+  /**
+   * Does nothing, as the agent keeps nothing from the game but its arrays.
+   **/
+  public void endGame(){}
+
   /**
    * Returns the name BaseLine.
    * @return the String "BaseLine"
@@ -65,14 +88,15 @@ public class BasicAgent implements Agent{
    * @return the action the player takes.
    **/ 
   public Action doAction(State s){
+    boolean first = firstAction;
     if(firstAction){
       init(s);
     } 
     //Assume players index is sgetNextPlayer()
     index = s.getNextPlayer();
-    //get any hints
+    //get any hints, unless they have all been received as they were given since the game was started
     try{
-      getHints(s);
+      if(first || told!=s.getOrder()) getHints(s);
       Action a = playKnown(s);
       if(a==null) a = discardKnown(s);
       if(a==null) a = hint(s);
@@ -87,7 +111,32 @@ public class BasicAgent implements Agent{
     }
   }
 
-  //updates colours and values from hints received
+  /**
+   * Updates colours and values from a hint as soon as it is received.
+   * @param a the action performed
+   * @param next the state reached, as seen by this agent
+   **/
+  public void actionPerformed(Action a, State next){
+    told = next.getOrder()==told+1?told+1:-1;
+    //until the game is started, hints are left for the first action to find
+    if(firstAction) return;
+    try{
+      if((a.getType()==ActionType.HINT_COLOUR || a.getType()==ActionType.HINT_VALUE) && a.getHintReceiver()==next.getObserver()){
+        boolean[] hints = a.getHintedCards();
+        for(int j = 0; j<hints.length; j++){
+          if(hints[j]){
+            if(a.getType()==ActionType.HINT_COLOUR) 
+              colours[j] = a.getColour();
+            else
+              values[j] = a.getValue();  
+          }
+        }
+      }
+    }
+    catch(IllegalActionException e){e.printStackTrace();}
+  }
+
+  //updates colours and values from hints received since the last action, by looking back through the previous states
   public void getHints(State s){
     try{
       State t = (State) s.clone();
@@ -112,9 +161,9 @@ public class BasicAgent implements Agent{
 
   //returns the value of the next playable card of the given colour
   public int playable(State s, Colour c){
-    java.util.Stack<Card> fw = s.getFirework(c);
-    if (fw.size()==5) return -1;
-    else return fw.size()+1;
+    int height = s.fireworkHeight(c);
+    if (height==5) return -1;
+    else return height+1;
   }
 
   //plays the first card known to be playable.
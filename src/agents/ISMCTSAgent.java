@@ -0,0 +1,454 @@
+package agents;
+import hanabAI.*;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An agent that chooses its actions by information-set Monte Carlo tree search.
+ * On each iteration the cards the agent cannot see (its own hand and the deck) are drawn by a HandSampler,
+ * consistently with the hints it has been given, and the rest of the game is played out on a Simulator,
+ * so the search itself creates no objects apart from the nodes of the tree.
+ * The tree holds only the agent's own moves (an open-loop tree).
+ * The other players, and the agent once it leaves the tree, follow a rollout policy in the style of BasicAgent:
+ * play a card known to be playable, discard a card known to be useless,
+ * hint a playable card to the next player who holds one, or discard a card.
+ * What each player knows about their hand comes from the hints they have been given, which are public,
+ * so the rollout policy never looks at a player's own cards.
+ * The search stops after a given number of iterations, or when the deadline for the move passes.
+ * <p>
+ * The search may be spread over several threads: the calling thread and the threads of a pool owned by the agent.
+ * The pool is not shared with the game runner, so a move is never held up by other work (such as the other games of a Tournament)
+ * run by a thread while it waits for the search. The threads of the pool stop when the agent is closed, or after a second without work.
+ * By default the threads share one tree, whose statistics are updated atomically without locks.
+ * A thread passing through a node counts its visit at once and its score only when its playout ends (a virtual loss),
+ * so other threads are steered towards other moves in the meantime.
+ * Alternatively each thread may search a tree of its own, and the visits of the root moves are added up at the end (root parallelisation).
+ **/
+public class ISMCTSAgent implements TimedAgent, AutoCloseable, ReusableAgent{
+
+  /**The number of iterations per move used by the default constructor**/
+  public static final int DEFAULT_ITERATIONS = 1000;
+  /**The exploration constant of the tree policy, for rewards scaled to [0,1]**/
+  private static final double EXPLORATION = 0.5;
+  private static final Colour[] COLOURS = Colour.values();
+
+  private final int iterations;
+  private final long moveNanos;
+  private final int threads;
+  private final boolean rootParallel;
+  private final SplittableRandom random;
+
+  private boolean firstAction = true;
+  private int numPlayers;
+  private int handSize;
+  private int index;
+  /**What each player has been told about their hand, and the cards this agent cannot see**/
+  private final HandSampler sampler = new HandSampler();
+  /**The search of each thread, kept from move to move**/
+  private Worker[] workers;
+  /**The threads that run all the workers but the first, or null if the agent searches in one thread or has been closed**/
+  private ThreadPoolExecutor pool;
+
+  /**
+   * Creates an agent that makes DEFAULT_ITERATIONS iterations per move in one thread.
+   **/
+  public ISMCTSAgent(){this(DEFAULT_ITERATIONS, 0);}
+
+  /**
+   * Creates an agent with the given budget, which searches in one thread.
+   * @param iterations the largest number of iterations per move
+   * @param moveNanos the longest time to search for each move, in nanoseconds, or 0 to rely on the iterations and the deadline
+   **/
+  public ISMCTSAgent(int iterations, long moveNanos){
+    this(iterations, moveNanos, 1, false, new SplittableRandom());
+  }
+
+  /**
+   * Creates an agent with the given budget and source of randomness, which searches in one thread so that its play can be repeated.
+   * @param iterations the largest number of iterations per move
+   * @param moveNanos the longest time to search for each move, in nanoseconds, or 0 to rely on the iterations and the deadline
+   * @param random the source of randomness for the search
+   **/
+  public ISMCTSAgent(int iterations, long moveNanos, SplittableRandom random){
+    this(iterations, moveNanos, 1, false, random);
+  }
+
+  /**
+   * Creates an agent that searches in parallel.
+   * @param iterations the largest number of iterations per move, shared between the threads
+   * @param moveNanos the longest time to search for each move, in nanoseconds, or 0 to rely on the iterations and the deadline
+   * @param threads the number of threads to search with
+   * @param rootParallel true if each thread should search a tree of its own, false if they should share one
+   **/
+  public ISMCTSAgent(int iterations, long moveNanos, int threads, boolean rootParallel){
+    this(iterations, moveNanos, threads, rootParallel, new SplittableRandom());
+  }
+
+  /**
+   * Creates an agent that searches in parallel, with the given source of randomness.
+   * Each thread draws from a generator split from it, but with more than one thread the play also depends on how the threads are scheduled.
+   * @param iterations the largest number of iterations per move, shared between the threads
+   * @param moveNanos the longest time to search for each move, in nanoseconds, or 0 to rely on the iterations and the deadline
+   * @param threads the number of threads to search with
+   * @param rootParallel true if each thread should search a tree of its own, false if they should share one
+   * @param random the source of randomness for the search
+   * @throws IllegalArgumentException if there are fewer than one iteration or thread
+   **/
+  public ISMCTSAgent(int iterations, long moveNanos, int threads, boolean rootParallel, SplittableRandom random) throws IllegalArgumentException{
+    if(iterations<1 || threads<1) throw new IllegalArgumentException("incorrect parameters");
+    this.iterations = iterations;
+    this.moveNanos = moveNanos;
+    this.threads = threads;
+    this.rootParallel = rootParallel;
+    this.random = random;
+  }
+
+  /**
+   * Returns the name ISMCTS.
+   * @return the String "ISMCTS"
+   * */
+  public String toString(){return "ISMCTS";}
+
+  //initialises the workers on the first call to doAction
+  private void init(State s){
+    numPlayers = s.getPlayers().length;
+    handSize = s.getHandView(0).size();
+    index = s.getObserver();
+    workers = new Worker[threads];
+    for(int w = 0; w<threads; w++) workers[w] = new Worker(random.split());
+    firstAction = false;
+  }
+
+  /**
+   * Forgets the previous game. The workers are kept if the game has as many players.
+   * @param numPlayers the number of players in the game
+   * @param seat the index of this agent's seat
+   **/
+  public void startGame(int numPlayers, int seat){
+    if(numPlayers!=this.numPlayers) workers = null;
+    firstAction = workers==null;
+    this.numPlayers = numPlayers;
+    index = seat;
+    sampler.reset();
+  }
+
+  /**
+   * Lets go of the trees of the last move.
+   **/
+  public void endGame(){
+    if(workers!=null) for(Worker w: workers) w.root = null;
+  }
+
+  /**
+   * Chooses an action by searching until the iterations run out or the deadline passes.
+   * @param s the current state of the game, as seen by this agent
+   * @param deadline the time by which the action must be chosen
+   * @return the action the player takes
+   **/
+  public Action doAction(State s, Deadline deadline){
+    if(firstAction) init(s);
+    sampler.update(s);
+    Deadline limit = moveNanos>0?Deadline.after(moveNanos):Deadline.NONE;
+    AtomicInteger started = new AtomicInteger();
+    Node shared = new Node(0);
+    for(Worker w: workers) w.start(s, rootParallel?new Node(0):shared, started, deadline, limit);
+    if(threads==1) workers[0].run();
+    else{
+      if(pool==null) pool = newPool(threads-1);
+      Future<?>[] tasks = new Future<?>[threads];
+      for(int w = 1; w<threads; w++) tasks[w] = pool.submit(workers[w]);
+      workers[0].run();
+      for(int w = 1; w<threads; w++) await(tasks[w]);
+    }
+    //with root parallelisation, each move in any of the trees is taken once, from the first tree that has it
+    int best = -1;
+    long bestVisits = -1;
+    for(int w = 0; w<(rootParallel?threads:1); w++){
+      for(Node c = workers[w].root.first; c!=null; c = c.next){
+        if(inEarlierRoot(w, c.move)) continue;
+        long v = c.visits;
+        for(int x = w+1; x<(rootParallel?threads:1); x++){
+          Node o = workers[x].root.child(c.move);
+          if(o!=null) v += o.visits;
+        }
+        if(v>bestVisits){
+          bestVisits = v;
+          best = c.move;
+        }
+      }
+    }
+    if(best==-1) best = workers[0].fallback();
+    return Action.decode(best, s);
+  }
+
+  /**
+   * Stops the threads of the search. The agent may still be used, and starts new threads if it needs them.
+   **/
+  public void close(){
+    if(pool!=null) pool.shutdown();
+    pool = null;
+  }
+
+  //a pool of daemon threads that stop after a second without work, so that an agent that is never closed does not keep them
+  private static ThreadPoolExecutor newPool(int size){
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+      Thread t = new Thread(r, "ISMCTS search");
+      t.setDaemon(true);
+      return t;
+    });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  //waits for a worker to finish its search, passing on any exception it threw
+  private static void await(Future<?> task){
+    try{task.get();}
+    catch(ExecutionException e){
+      if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+      throw new RuntimeException(e.getCause());
+    }
+    catch(InterruptedException e){
+      task.cancel(true);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  //whether a move is a child of the root of one of the first n workers
+  private boolean inEarlierRoot(int n, int move){
+    for(int w = 0; w<n; w++) if(workers[w].root.child(move)!=null) return true;
+    return false;
+  }
+
+  //whether a move is among the first n moves
+  private static boolean contains(int[] moves, int n, int move){
+    for(int i = 0; i<n; i++) if(moves[i]==move) return true;
+    return false;
+  }
+
+  /**
+   * The search of one thread, with its own simulator and working storage.
+   **/
+  private final class Worker implements Runnable{
+    private final SplittableRandom random;
+    private final HandSampler sampler = new HandSampler();
+    private Simulator sim;
+    private Node root;
+    /**The number of iterations begun by all the workers**/
+    private AtomicInteger started;
+    private Deadline deadline;
+    private Deadline limit;
+    /**Set by select if it added the node it returns to the tree**/
+    private boolean expanded;
+    /**For each player and slot, the kinds the card may be given the hints made in the playout**/
+    private final int[] rolloutKnowledge = new int[numPlayers*handSize];
+    private final int[] moves = new int[Action.MAX_MOVES];
+    private final int[] untried = new int[Action.MAX_MOVES];
+    private final Node[] path = new Node[Simulator.MAX_DEPTH];
+
+    Worker(SplittableRandom random){this.random = random;}
+
+    //prepares the search of a move
+    void start(State s, Node root, AtomicInteger started, Deadline deadline, Deadline limit){
+      sim = new Simulator(s, new Stack<Card>());
+      sampler.set(ISMCTSAgent.this.sampler);
+      this.root = root;
+      this.started = started;
+      this.deadline = deadline;
+      this.limit = limit;
+    }
+
+    //makes iterations until those shared by the workers run out or the deadline passes,
+    //checking the deadline before the first iteration and every 16 after
+    public void run(){
+      for(int it = 0; started.getAndIncrement()<iterations; it++){
+        if((it&15)==0 && (deadline.expired() || limit.expired())) break;
+        iterate();
+      }
+    }
+
+    //the move of the rollout policy for this agent, for when the search found no move
+    int fallback(){
+      sampler.sample(random, sim);
+      sampler.copyPossible(rolloutKnowledge);
+      int move = policy(index);
+      return move==-1?Action.encodePlay(index, 0):move;
+    }
+
+    //one iteration of the search: sample the hidden cards, descend the tree, play out the game, and add the score to the nodes on the path
+    private void iterate(){
+      sampler.sample(random, sim);
+      sampler.copyPossible(rolloutKnowledge);
+      int length = 0;
+      Node node = root;
+      while(!sim.gameOver()){
+        int p = sim.getNextPlayer();
+        int move;
+        if(p==index && node!=null){
+          int n = sim.legalMoves(moves);
+          if(n==0) break;
+          Node child = select(node, n);
+          path[length++] = child;
+          move = child.move;
+          node = expanded?null:child;
+        }
+        else move = policy(p);
+        if(move==-1) break;
+        apply(move);
+      }
+      int score = sim.getScore();
+      for(int i = 0; i<length; i++) Node.TOTAL.addAndGet(path[i], score);
+      while(sim.getDepth()>0) sim.undo();
+    }
+
+    //chooses the child of a node to follow, among the first n moves, adding a child for an untried move if there is one
+    //the visit to the child is counted at once, and its score when the iteration ends
+    private Node select(Node node, int n){
+      int u = 0;
+      for(int i = 0; i<n; i++){
+        Node c = node.child(moves[i]);
+        if(c==null) untried[u++] = moves[i];
+        else Node.AVAILABLE.incrementAndGet(c);
+      }
+      if(u>0){
+        Node fresh = new Node(untried[random.nextInt(u)]);
+        Node c = node.add(fresh);
+        expanded = c==fresh;
+        return c;
+      }
+      expanded = false;
+      Node best = null;
+      double bestValue = Double.NEGATIVE_INFINITY;
+      for(Node c = node.first; c!=null; c = c.next){
+        if(!contains(moves, n, c.move)) continue;
+        int v = c.visits;
+        double value = c.total/(25.0*v)+EXPLORATION*Math.sqrt(Math.log(c.available)/v);
+        if(value>bestValue){
+          bestValue = value;
+          best = c;
+        }
+      }
+      Node.VISITS.incrementAndGet(best);
+      return best;
+    }
+
+    //applies a move to the simulator and to the knowledge of the players
+    private void apply(int move){
+      int p = sim.getNextPlayer();
+      sim.apply(move);
+      switch(Action.typeOf(move)){
+        case PLAY: case DISCARD:
+          int slot = Action.positionOf(move);
+          rolloutKnowledge[p*handSize+slot] = sim.cardId(p, slot)<0?0:HandSampler.ALL;
+          break;
+        default: HandSampler.hint(rolloutKnowledge, handSize, move);
+      }
+    }
+
+    //the rollout policy: the move player p makes, using only what p can see and has been told, or -1 if there is none
+    private int policy(int p){
+      int playable = 0, useless = 0;
+      for(int c = 0; c<5; c++){
+        int h = sim.fireworkHeight(COLOURS[c]);
+        if(h<5) playable |= 1<<(c*5+h);
+        useless |= ((1<<h)-1)<<(c*5);
+      }
+      int base = p*handSize;
+      for(int i = 0; i<handSize; i++){
+        int k = rolloutKnowledge[base+i];
+        if(k!=0 && (k&~playable)==0) return Action.encodePlay(p, i);
+      }
+      int hints = sim.getHintTokens();
+      if(hints<8){
+        for(int i = 0; i<handSize; i++){
+          int k = rolloutKnowledge[base+i];
+          if(k!=0 && (k&~useless)==0) return Action.encodeDiscard(p, i);
+        }
+      }
+      if(hints>0){
+        for(int d = 1; d<numPlayers; d++){
+          int r = (p+d)%numPlayers;
+          for(int i = 0; i<handSize; i++){
+            int c = sim.cardId(r, i);
+            if(c<0 || (playable&(1<<c))==0) continue;
+            int k = rolloutKnowledge[r*handSize+i];
+            if((k&~playable)==0) continue;
+            boolean colourKnown = (k&~(31<<(c/5*5)))==0;
+            boolean valueKnown = (k&~(0x108421<<(c%5)))==0;
+            boolean colour = valueKnown || (!colourKnown && random.nextBoolean());
+            int mask = 0;
+            for(int j = 0; j<handSize; j++){
+              int o = sim.cardId(r, j);
+              if(o>=0 && (colour?o/5==c/5:o%5==c%5)) mask |= 1<<j;
+            }
+            return colour?Action.encodeColourHint(p, r, mask, handSize, COLOURS[c/5]):Action.encodeValueHint(p, r, mask, handSize, c%5+1);
+          }
+        }
+      }
+      if(hints<8){
+        int n = 0;
+        for(int i = 0; i<handSize; i++) if(rolloutKnowledge[base+i]!=0) untried[n++] = i;
+        if(n>0) return Action.encodeDiscard(p, untried[random.nextInt(n)]);
+      }
+      int n = sim.legalMoves(moves);
+      return n==0?-1:moves[random.nextInt(n)];
+    }
+  }
+
+  /**
+   * A node of the search tree: one of the agent's moves, with the results of the iterations that made it.
+   * The statistics and the list of children are updated atomically, so the tree can be shared by several threads.
+   **/
+  private static final class Node{
+    static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    static final AtomicIntegerFieldUpdater<Node> AVAILABLE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "available");
+    static final AtomicLongFieldUpdater<Node> TOTAL = AtomicLongFieldUpdater.newUpdater(Node.class, "total");
+    static final AtomicReferenceFieldUpdater<Node,Node> FIRST = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "first");
+
+    final int move;
+    /**The number of iterations that have passed through the node, including those still being played out**/
+    volatile int visits;
+    /**The number of iterations in which the move was legal**/
+    volatile int available;
+    /**The sum of the scores of the finished iterations that passed through the node**/
+    volatile long total;
+    volatile Node first;
+    /**The next sibling, which is set before the node is published and not changed after**/
+    Node next;
+
+    Node(int move){this.move = move;}
+
+    //the child for the given move, or null if there is none
+    Node child(int move){
+      for(Node c = first; c!=null; c = c.next) if(c.move==move) return c;
+      return null;
+    }
+
+    //adds a new child with one visit, unless another thread has just added a child for the same move,
+    //in which case the visit is counted there and that child is returned
+    Node add(Node c){
+      c.visits = 1;
+      c.available = 1;
+      while(true){
+        Node head = first;
+        for(Node o = head; o!=null; o = o.next){
+          if(o.move==c.move){
+            AVAILABLE.incrementAndGet(o);
+            VISITS.incrementAndGet(o);
+            return o;
+          }
+        }
+        c.next = head;
+        if(FIRST.compareAndSet(this, head, c)) return c;
+      }
+    }
+  }
+}
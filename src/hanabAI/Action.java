@@ -3,9 +3,19 @@ package hanabAI;
 /**
  * An abstract class to represent actions in the game Hanabi.
  * The class is designed to be immutable.
+ * Actions can also be encoded as a single int, so that search code can store and generate moves without creating objects.
+ * The bits of a code are:
+ * 0-1 the type (by ordinal); 2-4 the player; 5-7 the position of the card played or discarded, or the player receiving a hint;
+ * 8-10 the colour hinted (by ordinal, 7 for null) or the value hinted (7 for any value other than 1 to 5, which decodes as -1); 11-15 the hinted cards as a bitmask;
+ * and 16-18 the number of cards in the hint receiver's hand.
  * @author Tim French
  **/
 public class Action{
+
+  /**An upper bound on the number of legal moves in any state: a play and a discard per card, and up to 10 hints to each other player**/
+  public static final int MAX_MOVES = 50;
+  private static final ActionType[] TYPES = ActionType.values();
+  private static final Colour[] COLOURS = Colour.values();
   //the player performing the action
   private int player;
   //the player's name (for nice formatting)
@@ -16,8 +26,10 @@ public class Action{
   private int card;
   //The player recieving the hint, if the action is a hint
   private int hintee;
-  //The cards hinted at, if the action is a hint
-  private boolean[] cards;
+  //The cards hinted at, if the action is a hint: bit i is set if and only if the ith card matches the hint
+  private int cards;
+  //The number of cards in the hintee's hand, if the action is a hint
+  private int handSize;
   //The Colour hinted, if the action is a colour hint
   private Colour colour;
   //The value hinted, if the action is a value hint.
@@ -53,10 +65,25 @@ public class Action{
    * @throws IllegalActionException if the wrong ActionType is given
    * */
   public Action(int player, String playerName, ActionType type, int hintReceiver, boolean[] cards, Colour hint) throws IllegalActionException{
+    this(player, playerName, type, hintReceiver, mask(cards), cards==null?-1:cards.length, hint);
+  }
+
+  /**Constructor to create colour hint actions from a bitmask
+   * @param player the index of the player performing the action
+   * @param playerName the naem of the player performing the action
+   * @param type the type of the action, must be ActionType.HINT_COLOUR
+   * @param hintReceiver the index of the player recieving the hint
+   * @param cards a bitmask, such that bit i is set if and only if the ith card in the hintee's hand matches the hint
+   * @param handSize the number of cards in the hintee's hand
+   * @param hint the colour hinted at.
+   * @throws IllegalActionException if the wrong ActionType is given
+   * */
+  public Action(int player, String playerName, ActionType type, int hintReceiver, int cards, int handSize, Colour hint) throws IllegalActionException{
     this(player, playerName, type);
     if(type != ActionType.HINT_COLOUR) throw new IllegalActionException("Wrong parameters for action type");
     this.hintee = hintReceiver;
     this.cards = cards;
+    this.handSize = handSize;
     this.colour = hint;
   }
   
@@ -70,13 +97,36 @@ public class Action{
    * @throws IllegalActionException if the wrong ActionType is given
    * */
   public Action(int player, String playerName, ActionType type, int hintReceiver, boolean[] cards, int hint) throws IllegalActionException{
+    this(player, playerName, type, hintReceiver, mask(cards), cards==null?-1:cards.length, hint);
+  }
+
+  /**Constructor to create value hint actions from a bitmask
+   * @param player the index of the player performing the action
+   * @param playerName the naem of the player performing the action
+   * @param type the type of the action, must be ActionType.HINT_VALUE
+   * @param hintReceiver the index of the player recieving the hint
+   * @param cards a bitmask, such that bit i is set if and only if the ith card in the hintee's hand matches the hint
+   * @param handSize the number of cards in the hintee's hand
+   * @param hint the value hinted at.
+   * @throws IllegalActionException if the wrong ActionType is given
+   * */
+  public Action(int player, String playerName, ActionType type, int hintReceiver, int cards, int handSize, int hint) throws IllegalActionException{
     this(player, playerName, type);
     if(type != ActionType.HINT_VALUE) throw new IllegalActionException("Wrong parameters for action type");
     this.hintee = hintReceiver;
     this.cards = cards;
+    this.handSize = handSize;
     this.value = hint;
   }
 
+  //converts an array of hinted cards to a bitmask
+  private static int mask(boolean[] cards){
+    int mask = 0;
+    if(cards!=null)
+      for(int i = 0; i<cards.length && i<32; i++) if(cards[i]) mask |= 1<<i;
+    return mask;
+  }
+
   /**
    * get the player index
    * @return the index of the player performing the action
@@ -117,7 +167,30 @@ public class Action{
    **/ 
   public boolean[] getHintedCards() throws IllegalActionException{
     if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
-    return cards.clone();
+    if(handSize<0) return null;
+    boolean[] hinted = new boolean[handSize];
+    for(int i = 0; i<handSize && i<32; i++) hinted[i] = (cards&(1<<i))!=0;
+    return hinted;
+  }
+
+  /**
+   * gets a bitmask indicating the cards that are the subject of the hint
+   * @return a bitmask, such that bit i is set if and only if the ith card in the hintReceivers hand matches the hint (indexing from 0)
+   * @throws IllegalActionException if the action type is not HINT_COLOUR or HINT_VALUE
+   **/
+  public int getHintMask() throws IllegalActionException{
+    if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
+    return cards;
+  }
+
+  /**
+   * gets the number of cards in the hintReceivers hand, that is, the length of the array given by getHintedCards()
+   * @return the number of cards the hint refers to, or -1 if the hint was created from a null array
+   * @throws IllegalActionException if the action type is not HINT_COLOUR or HINT_VALUE
+   **/
+  public int getHintSize() throws IllegalActionException{
+    if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
+    return handSize;
   }
 
   /**
@@ -140,6 +213,119 @@ public class Action{
     return value;
   }
 
+  /**
+   * gives the int code of this action
+   * @return the code of the action, as described in the class comment
+   **/
+  public int encode(){
+    switch(type){
+      case PLAY: return encodePlay(player, card);
+      case DISCARD: return encodeDiscard(player, card);
+      case HINT_COLOUR: return encodeHint(ActionType.HINT_COLOUR, player, hintee, colour==null?7:colour.ordinal(), cards, handSize);
+      default: return encodeHint(ActionType.HINT_VALUE, player, hintee, valueCode(value), cards, handSize);
+    }
+  }
+
+  /**
+   * gives the code of a play action
+   * @param player the index of the player performing the action
+   * @param pos the position of the card to be played
+   * @return the code of the action
+   **/
+  public static int encodePlay(int player, int pos){return ActionType.PLAY.ordinal() | player<<2 | pos<<5;}
+
+  /**
+   * gives the code of a discard action
+   * @param player the index of the player performing the action
+   * @param pos the position of the card to be discarded
+   * @return the code of the action
+   **/
+  public static int encodeDiscard(int player, int pos){return ActionType.DISCARD.ordinal() | player<<2 | pos<<5;}
+
+  /**
+   * gives the code of a colour hint
+   * @param player the index of the player performing the action
+   * @param hintReceiver the index of the player recieving the hint
+   * @param cards a bitmask of the cards that match the hint
+   * @param handSize the number of cards in the hint receiver's hand
+   * @param hint the colour hinted at
+   * @return the code of the action
+   **/
+  public static int encodeColourHint(int player, int hintReceiver, int cards, int handSize, Colour hint){
+    return encodeHint(ActionType.HINT_COLOUR, player, hintReceiver, hint==null?7:hint.ordinal(), cards, handSize);
+  }
+
+  /**
+   * gives the code of a value hint
+   * @param player the index of the player performing the action
+   * @param hintReceiver the index of the player recieving the hint
+   * @param cards a bitmask of the cards that match the hint
+   * @param handSize the number of cards in the hint receiver's hand
+   * @param hint the value hinted at; any value other than 1 to 5 is coded as no value, and decodes as -1
+   * @return the code of the action
+   **/
+  public static int encodeValueHint(int player, int hintReceiver, int cards, int handSize, int hint){
+    return encodeHint(ActionType.HINT_VALUE, player, hintReceiver, valueCode(hint), cards, handSize);
+  }
+
+  //the 3 bit code of a value hinted, 7 for a value that is not that of a card, so that it cannot be read back as another value
+  private static int valueCode(int value){return value>=1 && value<=5?value:7;}
+
+  //the code of a hint, with the colour or value already reduced to 3 bits
+  static int encodeHint(ActionType type, int player, int hintReceiver, int hint, int cards, int handSize){
+    return type.ordinal() | player<<2 | hintReceiver<<5 | hint<<8 | (cards&31)<<11 | (handSize&7)<<16;
+  }
+
+  /**@return the type of the action with the given code**/
+  public static ActionType typeOf(int code){return TYPES[code&3];}
+
+  /**@return the index of the player performing the action with the given code**/
+  public static int playerOf(int code){return (code>>>2)&7;}
+
+  /**@return the position of the card played or discarded, or the player receiving the hint, for the action with the given code**/
+  public static int positionOf(int code){return (code>>>5)&7;}
+
+  /**@return the colour ordinal or value hinted by the action with the given code (7 for a null colour or a value other than 1 to 5)**/
+  public static int hintOf(int code){return (code>>>8)&7;}
+
+  /**@return the bitmask of the cards hinted by the action with the given code**/
+  public static int maskOf(int code){return (code>>>11)&31;}
+
+  /**
+   * recreates an action from its code
+   * @param code the code of the action
+   * @param playerName the name of the player performing the action
+   * @return an action equivalent to the one the code was made from
+   **/
+  public static Action decode(int code, String playerName){
+    Action a = new Action(playerOf(code), playerName, typeOf(code));
+    switch(a.type){
+      case PLAY: case DISCARD:
+        a.card = positionOf(code);
+        break;
+      case HINT_COLOUR:
+        a.hintee = positionOf(code);
+        a.cards = maskOf(code);
+        a.handSize = (code>>>16)&7;
+        a.colour = hintOf(code)==7?null:COLOURS[hintOf(code)];
+        break;
+      default:
+        a.hintee = positionOf(code);
+        a.cards = maskOf(code);
+        a.handSize = (code>>>16)&7;
+        a.value = hintOf(code)==7?-1:hintOf(code);
+    }
+    return a;
+  }
+
+  /**
+   * recreates an action from its code, taking the name of the player from the state
+   * @param code the code of the action
+   * @param s a state of the game the action was made in
+   * @return an action equivalent to the one the code was made from
+   **/
+  public static Action decode(int code, State s){return decode(code, s.getName(playerOf(code)));}
+
   /**
    * A string representation of the action being performed
    * @return a description of the action, depending on type
@@ -150,13 +336,13 @@ public class Action{
       case PLAY: return "Player "+playerName+ "("+player+") plays the card at position "+card;
       case DISCARD: return "Player "+playerName+ "("+player+") discards the card at position "+card;
       case HINT_COLOUR: 
-       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(cards.length>1?"s":"");
-       for(int i=0; i<cards.length; i++)ret += (cards[i]?" "+i:"");
+       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(handSize>1?"s":"");
+       for(int i=0; i<handSize; i++)ret += ((cards&(1<<i))!=0?" "+i:"");
        ret+= " have colour "+colour+"\"";
        return ret;
       case HINT_VALUE: 
-       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(cards.length>1?"s":"");
-       for(int i=0; i<cards.length; i++)ret += (cards[i]?" "+i:"");
+       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(handSize>1?"s":"");
+       for(int i=0; i<handSize; i++)ret += ((cards&(1<<i))!=0?" "+i:"");
        ret+= " have value "+value+"\"";
        return ret;
     }
@@ -0,0 +1,78 @@
+package hanabAI;
+
+/**
+ * A check of the int codes of actions.
+ * Every play, discard and hint that can be made in a game must decode to an action with the same fields and the same code,
+ * and a value hint of a value that no card has must be coded as no value (7), so that it is never read back as a hint of a real value.
+ **/
+public class ActionCheck{
+
+  private static final int[] BAD_VALUES = {-1, 0, 6, 7, 8, 9, 13, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+  /**
+   * Checks the codes of every action.
+   * @return the number of actions checked
+   * @throws IllegalStateException if a code does not read back as the action it was made from
+   * @throws IllegalActionException if an action cannot be created, which should not happen
+   **/
+  public static int check() throws IllegalStateException, IllegalActionException{
+    int n = 0;
+    for(int p = 0; p<5; p++){
+      for(int i = 0; i<5; i++){
+        same(new Action(p, "", ActionType.PLAY, i), Action.encodePlay(p, i));
+        same(new Action(p, "", ActionType.DISCARD, i), Action.encodeDiscard(p, i));
+        n += 2;
+      }
+      for(int r = 0; r<5; r++){
+        if(r==p) continue;
+        for(int cards = 0; cards<32; cards++){
+          for(Colour c: Colour.values()){
+            same(new Action(p, "", ActionType.HINT_COLOUR, r, cards, 5, c), Action.encodeColourHint(p, r, cards, 5, c));
+            n++;
+          }
+          for(int v = 1; v<=5; v++){
+            same(new Action(p, "", ActionType.HINT_VALUE, r, cards, 5, v), Action.encodeValueHint(p, r, cards, 5, v));
+            n++;
+          }
+          for(int v: BAD_VALUES){
+            int code = Action.encodeValueHint(p, r, cards, 5, v);
+            if(Action.hintOf(code)!=7) fail("value "+v+" is coded as "+Action.hintOf(code));
+            if(new Action(p, "", ActionType.HINT_VALUE, r, cards, 5, v).encode()!=code) fail("value "+v+" is coded differently by encode");
+            if(Action.decode(code, "").getValue()!=-1) fail("value "+v+" is read back as "+Action.decode(code, "").getValue());
+            n++;
+          }
+        }
+      }
+    }
+    return n;
+  }
+
+  //checks that an action and a code describe each other
+  private static void same(Action a, int code) throws IllegalStateException, IllegalActionException{
+    if(a.encode()!=code) fail(a+" is coded as "+a.encode()+", not "+code);
+    Action b = Action.decode(code, "");
+    if(b.encode()!=code || b.getType()!=a.getType() || b.getPlayer()!=a.getPlayer()) fail(a+" is read back as "+b);
+    switch(a.getType()){
+      case PLAY: case DISCARD:
+        if(b.getCard()!=a.getCard()) fail(a+" is read back as "+b);
+        break;
+      case HINT_COLOUR:
+        if(b.getHintReceiver()!=a.getHintReceiver() || b.getHintMask()!=a.getHintMask() || b.getColour()!=a.getColour()) fail(a+" is read back as "+b);
+        break;
+      default:
+        if(b.getHintReceiver()!=a.getHintReceiver() || b.getHintMask()!=a.getHintMask() || b.getValue()!=a.getValue()) fail(a+" is read back as "+b);
+    }
+  }
+
+  //reports a code that does not read back
+  private static void fail(String what) throws IllegalStateException{
+    throw new IllegalStateException("Action codes disagree: "+what);
+  }
+
+  /**
+   * Checks the codes of every action, and reports how many were checked.
+   **/
+  public static void main(String[] args) throws IllegalActionException{
+    System.out.println(check()+" actions: codes read back correctly");
+  }
+}
@@ -0,0 +1,68 @@
+package hanabAI;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A sink that writes games as compact binary records, in big-endian order.
+ * Each record starts with a tag byte:
+ * <ul>
+ * <li>'G' starts a game, followed by the id of the game (a long), the number of players and the hand size (a byte each),
+ * the name of each player (a byte giving the length, then at most 255 bytes of UTF-8),
+ * and the id of each card dealt (see Card.getId()) by player and position, as a byte, with 255 for an empty slot;</li>
+ * <li>'A' records an action, followed by its code (see Action.encode()) as an int,
+ * the card removed from the hand and the card left in its place (a byte each, 255 for none or for a hint);</li>
+ * <li>'E' ends the game, followed by the score (a signed byte) and the order of the last state (a short).</li>
+ * </ul>
+ * An action record takes 7 bytes, so a complete game takes well under a kilobyte.
+ **/
+public class BinaryRecordWriter extends GameRecordWriter{
+
+  /**The tag of the record starting a game**/
+  public static final byte GAME = 'G';
+  /**The tag of the record of an action**/
+  public static final byte ACTION = 'A';
+  /**The tag of the record ending a game**/
+  public static final byte END = 'E';
+
+  /**
+   * Creates a writer.
+   * @param channel the channel to write the records to, which is closed when the writer is closed
+   **/
+  public BinaryRecordWriter(WritableByteChannel channel){
+    super(channel);
+  }
+
+  protected void writeStart(long gameId, State first){
+    String[] players = first.getPlayers();
+    int handSize = first.getHandView(0).size();
+    ByteBuffer b = buffer(11+players.length*(256+handSize));
+    b.put(GAME).putLong(gameId).put((byte)players.length).put((byte)handSize);
+    for(String p: players){
+      byte[] name = p.getBytes(StandardCharsets.UTF_8);
+      int length = Math.min(name.length, 255);
+      b.put((byte)length).put(name, 0, length);
+    }
+    for(int p = 0; p<players.length; p++)
+      for(int i = 0; i<handSize; i++) b.put(id(first.cardAt(p, i)));
+  }
+
+  protected void writeAction(Action action, State next){
+    int code = action.encode();
+    ByteBuffer b = buffer(7);
+    b.put(ACTION).putInt(code);
+    if(action.getType()==ActionType.PLAY || action.getType()==ActionType.DISCARD){
+      b.put(id(next.previousCardPlayed()));
+      b.put(id(next.cardAt(action.getPlayer(), Action.positionOf(code))));
+    }
+    else b.put((byte)-1).put((byte)-1);
+  }
+
+  protected void writeEnd(State last, int score){
+    buffer(4).put(END).put((byte)score).putShort((short)last.getOrder());
+  }
+
+  //the id of a card as a byte, or 255 for no card
+  private static byte id(Card c){return (byte)(c==null?-1:c.getId());}
+}
@@ -1,11 +1,20 @@
 package hanabAI;
 
+import java.util.SplittableRandom;
 import java.util.Stack;
 
-/**An immutable class for representing Hanabi cards**/
+/**
+ * An immutable class for representing Hanabi cards.
+ * Each of the 25 kinds of card has an id from 0 to 24, ordered by colour and then value,
+ * and a canonical instance that can be obtained from the id, so cards can be stored and counted as small integers.
+ **/
 public class Card{
+  /**The number of different kinds of card**/
+  public static final int KINDS = 25;
+
   private Colour colour;//the card's colour
   private int value;//the number on the card
+  private int id;//the kind of the card, or -1 if it has no colour
 
   /**
    * Constrcuts a card with the specified colour and value
@@ -15,8 +24,33 @@ public class Card{
     if(val<1 || val>5) throw new IllegalArgumentException("Card value out of range");
     colour = c;
     value = val;
+    id = (c==null?-1:c.ordinal()*5+val-1);
+  }
+
+  /**
+   * Gives the canonical card of the given kind.
+   * @param id the id of the kind of card, from 0 to 24
+   * @return the card with that id
+   * @throws ArrayIndexOutOfBoundsException if the id is out of range
+   **/
+  public static Card fromId(int id) throws ArrayIndexOutOfBoundsException{return kinds[id];}
+
+  /**
+   * Gives the canonical card with the given colour and value.
+   * @return the card with the given colour and value
+   * @throws IllegalArgumentException if the colour is null or the value is not between 1 and 5 inclusive
+   **/
+  public static Card valueOf(Colour c, int val) throws IllegalArgumentException{
+    if(c==null || val<1 || val>5) throw new IllegalArgumentException("Card out of range");
+    return kinds[c.ordinal()*5+val-1];
   }
 
+  /**
+   *Get the id of the kind of card
+   *@return the id of the card, from 0 to 24, ordered by colour and then value (or -1 if the card has no colour)
+   */
+  public int getId(){return id;}
+
   /**
    *Get the colour
    *@return the colour of the card
@@ -49,24 +83,50 @@ public class Card{
 
   /**
    * Gives a new instance of a shuffled deck of cards deck of cards.
-   * Pairs of random cards are swapped 100 times, and placed into a stack. 
+   * The cards are shuffled with a Fisher-Yates shuffle, and placed into a stack. 
    * @return a stack of Hanabi cards in random order 
    **/
   public static Stack<Card> shuffledDeck(){
-    Card[] deck = getDeck();
-    java.util.Random r = new java.util.Random();
-    for(int i = 0; i<1000; i++){
-      int a = r.nextInt(50);
-      int b = r.nextInt(50);
-      Card c = deck[a];
-      deck[a]= deck[b];
-      deck[b]=c;
-    }
+    return shuffledDeck(new SplittableRandom());
+  }
+
+  /**
+   * Gives a shuffled deck that is determined by the seed, so that a deal can be replayed.
+   * @param seed the seed for the shuffle
+   * @return a stack of Hanabi cards in an order determined by the seed
+   **/
+  public static Stack<Card> shuffledDeck(long seed){
+    return shuffledDeck(new SplittableRandom(seed));
+  }
+
+  /**
+   * Gives a shuffled deck, using the given generator.
+   * @param r the source of randomness for the shuffle
+   * @return a stack of Hanabi cards in random order
+   **/
+  public static Stack<Card> shuffledDeck(SplittableRandom r){
     Stack<Card> shuffle = new Stack<Card>();
-    for(Card c: deck) shuffle.push(c);
+    shuffle.ensureCapacity(deck.length);
+    shuffle(shuffle, r);
     return shuffle;
   }
 
+  /**
+   * Replaces the contents of a stack with a complete deck in random order.
+   * The shuffle runs in linear time, and creates no objects if the stack already has room for 50 cards,
+   * so a stack can be reused for deal after deal.
+   * @param shuffle the stack to fill
+   * @param r the source of randomness for the shuffle
+   **/
+  public static void shuffle(Stack<Card> shuffle, SplittableRandom r){
+    shuffle.clear();
+    for(Card c: deck) shuffle.add(c);
+    for(int i = deck.length-1; i>0; i--){
+      int j = r.nextInt(i+1);
+      shuffle.set(i, shuffle.set(j, shuffle.get(i)));
+    }
+  }
+
   /**
    * Cards are compared by colour and value.
    **/ 
@@ -78,23 +138,25 @@ public class Card{
     return false;
   }
 
-  private static Card[] deck = {
-    new Card(Colour.BLUE,1),new Card(Colour.BLUE,1), new Card(Colour.BLUE,1),
-    new Card(Colour.BLUE,2),new Card(Colour.BLUE,2),new Card(Colour.BLUE,3),new Card(Colour.BLUE,3),
-    new Card(Colour.BLUE,4),new Card(Colour.BLUE,4),new Card(Colour.BLUE,5),
-    new Card(Colour.RED,1),new Card(Colour.RED,1), new Card(Colour.RED,1),
-    new Card(Colour.RED,2),new Card(Colour.RED,2),new Card(Colour.RED,3),new Card(Colour.RED,3),
-    new Card(Colour.RED,4),new Card(Colour.RED,4),new Card(Colour.RED,5),
-    new Card(Colour.GREEN,1),new Card(Colour.GREEN,1), new Card(Colour.GREEN,1),
-    new Card(Colour.GREEN,2),new Card(Colour.GREEN,2),new Card(Colour.GREEN,3),new Card(Colour.GREEN,3),
-    new Card(Colour.GREEN,4),new Card(Colour.GREEN,4),new Card(Colour.GREEN,5),
-    new Card(Colour.WHITE,1),new Card(Colour.WHITE,1), new Card(Colour.WHITE,1),
-    new Card(Colour.WHITE,2),new Card(Colour.WHITE,2),new Card(Colour.WHITE,3),new Card(Colour.WHITE,3),
-    new Card(Colour.WHITE,4),new Card(Colour.WHITE,4),new Card(Colour.WHITE,5),
-    new Card(Colour.YELLOW,1),new Card(Colour.YELLOW,1), new Card(Colour.YELLOW,1),
-    new Card(Colour.YELLOW,2),new Card(Colour.YELLOW,2),new Card(Colour.YELLOW,3),new Card(Colour.YELLOW,3),
-    new Card(Colour.YELLOW,4),new Card(Colour.YELLOW,4),new Card(Colour.YELLOW,5)
-  };
+  /**
+   * Cards with the same colour and value have the same hash code, their id.
+   **/
+  public int hashCode(){return id==-1?value:id;}
+
+  /**The canonical card of each kind, indexed by id**/
+  private static final Card[] kinds = new Card[KINDS];
+  /**A complete deck, ordered by colour and value, made of the canonical cards**/
+  private static final Card[] deck = new Card[50];
+  static{
+    int i = 0;
+    for(Colour c: Colour.values()){
+      for(int v = 1; v<=5; v++){
+        Card card = new Card(c,v);
+        kinds[card.id] = card;
+        for(int k = 0; k<card.getCount(); k++) deck[i++] = card;
+      }
+    }
+  }
 
 }
 
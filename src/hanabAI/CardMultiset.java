@@ -0,0 +1,162 @@
+package hanabAI;
+
+/**
+ * A multiset of Hanabi cards, counted by kind.
+ * The 25 counters are 4 bits each, packed into two longs,
+ * so adding, removing and counting cards of a kind take constant time and create no objects.
+ * Each kind can be counted up to 15 times, which is more than enough for any collection of cards from one deck.
+ **/
+public class CardMultiset implements Cloneable{
+
+  /**The number of bits in each counter**/
+  private static final int BITS = 4;
+  /**The number of counters held in the first long**/
+  private static final int LOW_KINDS = 64/BITS;
+  /**The largest count of one kind**/
+  public static final int MAX_COUNT = (1<<BITS)-1;
+
+  /**The counters of the kinds with ids 0 to 15**/
+  private long low;
+  /**The counters of the kinds with ids 16 to 24**/
+  private long high;
+  /**The total number of cards**/
+  private int size;
+
+  /**
+   * Creates an empty multiset.
+   **/
+  public CardMultiset(){}
+
+  /**
+   * Creates a multiset containing every card in a complete deck.
+   * @return a multiset with 3 of each one, 2 of each two, three and four, and 1 of each five
+   **/
+  public static CardMultiset fullDeck(){
+    CardMultiset m = new CardMultiset();
+    for(Card c: Card.getDeck()) m.add(c.getId());
+    return m;
+  }
+
+  /**
+   * Gives the number of cards of a kind.
+   * @param id the id of the kind (see Card.getId())
+   * @return the number of cards of that kind
+   **/
+  public int count(int id){
+    return id<LOW_KINDS ? (int)(low>>>(id*BITS))&MAX_COUNT : (int)(high>>>((id-LOW_KINDS)*BITS))&MAX_COUNT;
+  }
+
+  /**
+   * Gives the number of cards of the same kind as the given card.
+   * @param c the card
+   * @return the number of cards with the same colour and value
+   **/
+  public int count(Card c){return count(c.getId());}
+
+  /**
+   * Tests whether a card of a kind is present.
+   * @param id the id of the kind
+   * @return true if there is at least one card of that kind
+   **/
+  public boolean contains(int id){return count(id)>0;}
+
+  /**
+   * Adds a card of a kind.
+   * @param id the id of the kind
+   * @throws IllegalStateException if there are already MAX_COUNT cards of that kind
+   **/
+  public void add(int id) throws IllegalStateException{
+    if(count(id)==MAX_COUNT) throw new IllegalStateException("Too many cards of one kind");
+    if(id<LOW_KINDS) low += 1L<<(id*BITS);
+    else high += 1L<<((id-LOW_KINDS)*BITS);
+    size++;
+  }
+
+  /**
+   * Adds a card.
+   * @param c the card
+   * @throws IllegalStateException if there are already MAX_COUNT cards of that kind
+   **/
+  public void add(Card c) throws IllegalStateException{add(c.getId());}
+
+  /**
+   * Removes a card of a kind.
+   * @param id the id of the kind
+   * @return true if a card was removed, false if there was no card of that kind
+   **/
+  public boolean remove(int id){
+    if(count(id)==0) return false;
+    if(id<LOW_KINDS) low -= 1L<<(id*BITS);
+    else high -= 1L<<((id-LOW_KINDS)*BITS);
+    size--;
+    return true;
+  }
+
+  /**
+   * Removes a card.
+   * @param c the card
+   * @return true if a card was removed, false if there was no card of that kind
+   **/
+  public boolean remove(Card c){return remove(c.getId());}
+
+  /**@return the total number of cards**/
+  public int size(){return size;}
+
+  /**@return true if there are no cards**/
+  public boolean isEmpty(){return size==0;}
+
+  /**
+   * Removes every card.
+   **/
+  public void clear(){
+    low = 0;
+    high = 0;
+    size = 0;
+  }
+
+  /**
+   * Makes this multiset a copy of another, without creating any objects.
+   * @param m the multiset to copy
+   **/
+  public void set(CardMultiset m){
+    low = m.low;
+    high = m.high;
+    size = m.size;
+  }
+
+  /**
+   * Produces a copy of the multiset
+   **/
+  public CardMultiset clone(){
+    try{return (CardMultiset) super.clone();}
+    catch(CloneNotSupportedException e){return null;}
+  }
+
+  /**
+   * Multisets are equal if they have the same number of cards of every kind.
+   **/
+  public boolean equals(Object o){
+    if(o instanceof CardMultiset){
+      CardMultiset m = (CardMultiset)o;
+      return m.low==low && m.high==high;
+    }
+    return false;
+  }
+
+  public int hashCode(){return Long.hashCode(low*31+high);}
+
+  /**
+   * Lists the cards, with the number of each kind present.
+   * @return a description of the multiset
+   **/
+  public String toString(){
+    StringBuilder b = new StringBuilder("{");
+    for(int id = 0; id<Card.KINDS; id++){
+      int n = count(id);
+      if(n==0) continue;
+      if(b.length()>1) b.append(", ");
+      b.append(Card.fromId(id)).append(" x").append(n);
+    }
+    return b.append('}').toString();
+  }
+}
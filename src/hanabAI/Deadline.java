@@ -0,0 +1,62 @@
+package hanabAI;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time by which an agent must decide on its action, measured with System.nanoTime().
+ * A deadline is immutable, so it can be passed to the threads of a search.
+ **/
+public final class Deadline{
+
+  /**A deadline that never expires**/
+  public static final Deadline NONE = new Deadline(0, Long.MAX_VALUE);
+
+  /**The time the deadline was set**/
+  private final long start;
+  /**The time allowed, in nanoseconds**/
+  private final long budget;
+
+  //creates a deadline
+  private Deadline(long start, long budget){
+    this.start = start;
+    this.budget = budget;
+  }
+
+  /**
+   * Gives a deadline the given time from now.
+   * @param nanos the time allowed, in nanoseconds
+   * @return the deadline
+   **/
+  public static Deadline after(long nanos){
+    return new Deadline(System.nanoTime(), Math.max(nanos, 0));
+  }
+
+  /**
+   * Gives a deadline the given time from now.
+   * @param time the time allowed
+   * @param unit the unit of the time allowed
+   * @return the deadline
+   **/
+  public static Deadline after(long time, TimeUnit unit){
+    return after(unit.toNanos(time));
+  }
+
+  /**@return true if the deadline has passed**/
+  public boolean expired(){
+    return budget!=Long.MAX_VALUE && System.nanoTime()-start>=budget;
+  }
+
+  /**@return the time left before the deadline, in nanoseconds, which is 0 once it has passed and Long.MAX_VALUE if it never expires**/
+  public long remainingNanos(){
+    if(budget==Long.MAX_VALUE) return Long.MAX_VALUE;
+    return Math.max(budget-(System.nanoTime()-start), 0);
+  }
+
+  /**@return the time allowed in total, in nanoseconds, or Long.MAX_VALUE if the deadline never expires**/
+  public long getBudgetNanos(){return budget;}
+
+  /**@return a description of the time left**/
+  public String toString(){
+    return budget==Long.MAX_VALUE?"Deadline: none":"Deadline: "+remainingNanos()/1000+"us of "+budget/1000+"us left";
+  }
+}
@@ -0,0 +1,150 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.Stack;
+
+/**
+ * A fixed set of deals, stored in a compact binary file so that different runs can play exactly the same games.
+ * The file has a 16 byte header (the magic number HDK1, the number of deals, and the seed the deals were generated from),
+ * followed by 50 bytes for each deal: the card ids (see Card.getId()) in the order the cards are dealt.
+ * The file is memory-mapped and only read with absolute gets,
+ * so one corpus can be shared by any number of threads, and reading a deal creates no objects.
+ **/
+public class DeckCorpus{
+
+  /**The magic number at the start of a corpus file**/
+  private static final int MAGIC = 0x48444B31;
+  /**The size of the header, in bytes**/
+  private static final int HEADER = 16;
+  /**The number of bytes used by each deal**/
+  public static final int DEAL_SIZE = 50;
+
+  /**The mapped file**/
+  private final MappedByteBuffer buffer;
+  /**The number of deals in the file**/
+  private final int size;
+  /**The seed the deals were generated from**/
+  private final long seed;
+
+  //creates a corpus over a mapped file
+  private DeckCorpus(MappedByteBuffer buffer) throws IOException{
+    if(buffer.capacity()<HEADER || buffer.getInt(0)!=MAGIC) throw new IOException("Not a deck corpus");
+    this.buffer = buffer;
+    size = buffer.getInt(4);
+    seed = buffer.getLong(8);
+    if(size<0 || (long)HEADER+(long)size*DEAL_SIZE>buffer.capacity()) throw new IOException("Deck corpus is truncated");
+  }
+
+  /**
+   * Opens a corpus file by memory-mapping it.
+   * @param file the corpus file
+   * @return the corpus
+   * @throws IOException if the file cannot be read, or is not a deck corpus
+   **/
+  public static DeckCorpus open(Path file) throws IOException{
+    try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+      return new DeckCorpus(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    }
+  }
+
+  /**
+   * Generates a corpus of shuffled deals and writes it to a file.
+   * Each deal is shuffled with its own generator, split from one seeded with the given seed.
+   * @param file the file to write, which is replaced if it exists
+   * @param seed the seed the deals are generated from
+   * @param deals the number of deals to generate
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the number of deals is negative, or the file would be too large to map
+   **/
+  public static void write(Path file, long seed, int deals) throws IOException, IllegalArgumentException{
+    if(deals<0 || (long)HEADER+(long)deals*DEAL_SIZE>Integer.MAX_VALUE) throw new IllegalArgumentException("incorrect parameters");
+    try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+      ByteBuffer buf = ByteBuffer.allocate(HEADER+DEAL_SIZE*1024);
+      buf.putInt(MAGIC).putInt(deals).putLong(seed);
+      SplittableRandom r = new SplittableRandom(seed);
+      Stack<Card> deck = new Stack<Card>();
+      for(int i = 0; i<deals; i++){
+        Card.shuffle(deck, r.split());
+        for(int j = DEAL_SIZE-1; j>=0; j--) buf.put((byte)deck.get(j).getId());
+        if(buf.remaining()<DEAL_SIZE){
+          buf.flip();
+          while(buf.hasRemaining()) ch.write(buf);
+          buf.clear();
+        }
+      }
+      buf.flip();
+      while(buf.hasRemaining()) ch.write(buf);
+    }
+  }
+
+  /**@return the number of deals in the corpus**/
+  public int size(){return size;}
+
+  /**@return the seed the deals were generated from**/
+  public long getSeed(){return seed;}
+
+  /**
+   * Copies the card ids of a deal, in the order the cards are dealt.
+   * @param deal the index of the deal
+   * @param ids an array of at least 50 bytes to copy the card ids into
+   * @throws IndexOutOfBoundsException if there is no such deal
+   **/
+  public void read(int deal, byte[] ids) throws IndexOutOfBoundsException{
+    int offset = offset(deal);
+    for(int i = 0; i<DEAL_SIZE; i++) ids[i] = buffer.get(offset+i);
+  }
+
+  /**
+   * Fills a stack with the cards of a deal, so that the first card dealt is at the top.
+   * No objects are created if the stack already has room for 50 cards.
+   * @param deal the index of the deal
+   * @param deck the stack to fill, whose previous contents are removed
+   * @return the deck, for convenience
+   * @throws IndexOutOfBoundsException if there is no such deal
+   **/
+  public Stack<Card> deck(int deal, Stack<Card> deck) throws IndexOutOfBoundsException{
+    int offset = offset(deal);
+    deck.clear();
+    for(int i = DEAL_SIZE-1; i>=0; i--) deck.add(Card.fromId(buffer.get(offset+i)));
+    return deck;
+  }
+
+  /**
+   * Gives a new stack holding the cards of a deal, so that the first card dealt is at the top.
+   * @param deal the index of the deal
+   * @return the deck for the deal
+   * @throws IndexOutOfBoundsException if there is no such deal
+   **/
+  public Stack<Card> deck(int deal) throws IndexOutOfBoundsException{
+    Stack<Card> deck = new Stack<Card>();
+    deck.ensureCapacity(DEAL_SIZE);
+    return deck(deal, deck);
+  }
+
+  /**
+   * Writes a corpus file, for Tournament.main and other runs to take their deals from.
+   * The arguments are the file to write, the seed (the current time by default) and the number of deals (10000 by default).
+   **/
+  public static void main(String[] args) throws IOException{
+    if(args.length==0){
+      System.out.println("Usage: java hanabAI.DeckCorpus file [seed] [deals]");
+      return;
+    }
+    long seed = args.length>1?Long.parseLong(args[1]):System.nanoTime();
+    int deals = args.length>2?Integer.parseInt(args[2]):10000;
+    write(java.nio.file.Paths.get(args[0]), seed, deals);
+    System.out.println("Wrote "+deals+" deals with seed "+seed+" to "+args[0]);
+  }
+
+  //the position of a deal in the file
+  private int offset(int deal){
+    if(deal<0 || deal>=size) throw new IndexOutOfBoundsException("No deal "+deal);
+    return HEADER+deal*DEAL_SIZE;
+  }
+}
@@ -0,0 +1,116 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+import java.util.Stack;
+
+/**
+ * A differential check of the three game engines: State, PackedState and Simulator.
+ * Seeded games of random legal moves are played on all three side by side,
+ * and after every move the engines must agree on the hands, fireworks, discards, tokens, turn and score,
+ * and on the legal moves of the next player.
+ * At the end of each game every move is undone on the Simulator, which must pass back through each earlier State.
+ **/
+public class EngineCheck{
+
+  private static final Colour[] COLOURS = Colour.values();
+
+  private long moves;
+
+  /**
+   * Plays one game on the three engines.
+   * @param gameSeed the seed of the deal and of the moves
+   * @throws IllegalStateException if the engines disagree
+   * @throws IllegalActionException if State rejects a move the engines gave as legal
+   **/
+  public void check(long gameSeed) throws IllegalStateException, IllegalActionException{
+    SplittableRandom random = new SplittableRandom(gameSeed);
+    String[] players = new String[2+random.nextInt(4)];
+    for(int i = 0; i<players.length; i++) players[i] = "Player "+i;
+    Stack<Card> deck = Card.shuffledDeck(gameSeed);
+    Stack<Card> packedDeck = Card.shuffledDeck(gameSeed);
+    State s = new State(players, deck);
+    PackedState p = new PackedState(players, packedDeck);
+    Simulator sim = new Simulator(s, deck);
+    State[] history = new State[Simulator.MAX_DEPTH+1];
+    int[] legal = new int[Action.MAX_MOVES], packedLegal = new int[Action.MAX_MOVES], simLegal = new int[Action.MAX_MOVES];
+    int depth = 0;
+    while(true){
+      history[depth] = s;
+      compare(s, p, gameSeed);
+      compare(s, sim, gameSeed);
+      int n = s.legalMoves(legal);
+      if(p.legalMoves(packedLegal)!=n || sim.legalMoves(simLegal)!=n) fail(gameSeed, s.getOrder(), "number of legal moves");
+      for(int i = 0; i<n; i++)
+        if(packedLegal[i]!=legal[i] || simLegal[i]!=legal[i]) fail(gameSeed, s.getOrder(), "legal moves");
+      if(s.gameOver()) break;
+      Action a = Action.decode(legal[random.nextInt(n)], s);
+      s = s.nextState(a, deck);
+      p = p.nextState(a, packedDeck);
+      sim.apply(a.encode());
+      depth++;
+      moves++;
+    }
+    for(int d = depth-1; d>=0; d--){
+      sim.undo();
+      compare(history[d], sim, gameSeed);
+    }
+  }
+
+  /**@return the number of moves checked so far**/
+  public long getMoves(){return moves;}
+
+  //checks that a PackedState agrees with a State
+  private static void compare(State s, PackedState p, long gameSeed){
+    int order = s.getOrder();
+    for(int q = 0; q<s.getPlayers().length; q++){
+      Card[] hand = s.getHand(q);
+      for(int i = 0; i<hand.length; i++) if(p.cardId(q, i)!=PackedState.id(hand[i])) fail(gameSeed, order, "PackedState hand "+q);
+    }
+    for(Colour c: COLOURS) if(p.fireworkHeight(c)!=s.fireworkHeight(c)) fail(gameSeed, order, "PackedState firework "+c);
+    for(int id = 0; id<Card.KINDS; id++) if(p.discardCount(id)!=s.discardCount(id)) fail(gameSeed, order, "PackedState discards");
+    if(p.getHintTokens()!=s.getHintTokens() || p.getFuseTokens()!=s.getFuseTokens()) fail(gameSeed, order, "PackedState tokens");
+    if(p.getOrder()!=order || p.getFinalActionIndex()!=s.getFinalActionIndex() || p.getNextPlayer()!=s.getNextPlayer())
+      fail(gameSeed, order, "PackedState turn");
+    if(p.getScore()!=s.getScore() || p.gameOver()!=s.gameOver()) fail(gameSeed, order, "PackedState score");
+  }
+
+  //checks that a Simulator agrees with a State
+  private static void compare(State s, Simulator sim, long gameSeed){
+    int order = s.getOrder();
+    int cards = s.getDiscards().size();
+    for(int q = 0; q<s.getPlayers().length; q++){
+      Card[] hand = s.getHand(q);
+      for(int i = 0; i<hand.length; i++){
+        if(sim.cardId(q, i)!=PackedState.id(hand[i])) fail(gameSeed, order, "Simulator hand "+q);
+        if(hand[i]!=null) cards++;
+      }
+    }
+    for(Colour c: COLOURS){
+      if(sim.fireworkHeight(c)!=s.fireworkHeight(c)) fail(gameSeed, order, "Simulator firework "+c);
+      cards += s.fireworkHeight(c);
+    }
+    if(sim.getDeckSize()!=DeckCorpus.DEAL_SIZE-cards) fail(gameSeed, order, "Simulator deck");
+    for(int id = 0; id<Card.KINDS; id++) if(sim.discardCount(id)!=s.discardCount(id)) fail(gameSeed, order, "Simulator discards");
+    if(sim.getHintTokens()!=s.getHintTokens() || sim.getFuseTokens()!=s.getFuseTokens()) fail(gameSeed, order, "Simulator tokens");
+    if(sim.getOrder()!=order || sim.getFinalActionIndex()!=s.getFinalActionIndex() || sim.getNextPlayer()!=s.getNextPlayer())
+      fail(gameSeed, order, "Simulator turn");
+    if(sim.getScore()!=s.getScore() || sim.gameOver()!=s.gameOver()) fail(gameSeed, order, "Simulator score");
+  }
+
+  //reports a disagreement
+  private static void fail(long gameSeed, int order, String what) throws IllegalStateException{
+    throw new IllegalStateException("Engines disagree on the "+what+" in game "+gameSeed+" at order "+order);
+  }
+
+  /**
+   * Checks the engines over a number of seeded games.
+   * The optional arguments are the number of games (2000 by default) and the seed of the first game (0 by default).
+   **/
+  public static void main(String[] args) throws IllegalActionException{
+    int games = args.length>0?Integer.parseInt(args[0]):2000;
+    long first = args.length>1?Long.parseLong(args[1]):0;
+    EngineCheck check = new EngineCheck();
+    for(long g = first; g<first+games; g++) check.check(g);
+    System.out.println(games+" games, "+check.getMoves()+" moves: State, PackedState and Simulator agree");
+  }
+}
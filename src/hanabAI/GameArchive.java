@@ -0,0 +1,310 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Stack;
+
+/**
+ * An archive of played games, stored in a compact binary file that can be memory-mapped, so any game can be replayed in a few microseconds.
+ * The file has a 16 byte header (the magic number HGA1, the number of games, and the position of the index),
+ * followed by the record of each game, and then the index.
+ * A writer adding games to an existing archive leaves its index in place, unused once the writer is closed,
+ * and writes the new records and then a new index after it, so the archive stays readable if the writer is never closed.
+ * The record of a game is its id (a long), the number of players, the score (-1 if the game failed) and the fuse tokens left (a byte each),
+ * a spare byte, the number of actions (a short), two spare bytes, the 50 card ids of the deck in the order the cards are dealt,
+ * and the code of each action (see Action.encode()) as an int.
+ * The index holds 16 bytes for each game: its id, the position of its record (an int), the number of players, the score and the fuse tokens left.
+ * The index is sorted by id (games with the same id are in the order they were added), so games are numbered in order of id,
+ * and a game can be found by its id with a binary search.
+ * Games are added with a Writer, which appends their records and rewrites the index when it is closed.
+ * The names of the players are not archived, so replayed games name the players by their seats.
+ **/
+public class GameArchive{
+
+  /**The magic number at the start of an archive file**/
+  private static final int MAGIC = 0x48474131;
+  /**The size of the header, in bytes**/
+  private static final int HEADER = 16;
+  /**The size of an index entry, in bytes**/
+  private static final int ENTRY = 16;
+  /**The size of the fixed part of a game record, in bytes**/
+  private static final int RECORD = 16+DeckCorpus.DEAL_SIZE;
+
+  /**The mapped file**/
+  private final MappedByteBuffer buffer;
+  /**The number of games in the archive**/
+  private final int size;
+  /**The position of the index**/
+  private final int index;
+
+  //creates an archive over a mapped file
+  private GameArchive(MappedByteBuffer buffer) throws IOException{
+    if(buffer.capacity()<HEADER || buffer.getInt(0)!=MAGIC) throw new IOException("Not a game archive");
+    this.buffer = buffer;
+    size = buffer.getInt(4);
+    long i = buffer.getLong(8);
+    if(size<0 || i<HEADER || i+(long)size*ENTRY>buffer.capacity()) throw new IOException("Game archive is truncated");
+    index = (int)i;
+  }
+
+  /**
+   * Opens an archive file by memory-mapping it.
+   * @param file the archive file
+   * @return the archive
+   * @throws IOException if the file cannot be read, or is not a game archive
+   **/
+  public static GameArchive open(Path file) throws IOException{
+    try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+      return new GameArchive(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    }
+  }
+
+  /**
+   * Gives a writer that adds games to an archive file.
+   * If the file is already an archive, the games are added after those it holds; otherwise a new, empty archive is created.
+   * The games added are only part of the archive once the writer is closed; until then the file holds the archive as it was.
+   * @param file the archive file
+   * @return a writer, which may be used as the sink of a Tournament
+   * @throws IOException if the file cannot be written, or exists and is not a game archive
+   **/
+  public static Writer writer(Path file) throws IOException{
+    FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    try{
+      return new Writer(ch);
+    }
+    catch(IOException e){
+      ch.close();
+      throw e;
+    }
+  }
+
+  /**@return the number of games in the archive**/
+  public int size(){return size;}
+
+  /**
+   * Finds a game by its id, by a binary search of the index.
+   * @param gameId the id of the game, such as the seed given by Tournament.gameSeed(int)
+   * @return the index of the first game in the archive with that id, or -1 if there is none
+   **/
+  public int find(long gameId){
+    int lo = 0, hi = size;
+    while(lo<hi){
+      int mid = (lo+hi)>>>1;
+      if(buffer.getLong(index+mid*ENTRY)<gameId) lo = mid+1;
+      else hi = mid;
+    }
+    return lo<size && buffer.getLong(index+lo*ENTRY)==gameId?lo:-1;
+  }
+
+  /**@return the id of the given game**/
+  public long getGameId(int game){return buffer.getLong(entry(game));}
+
+  /**@return the number of players in the given game**/
+  public int getNumPlayers(int game){return buffer.get(entry(game)+12);}
+
+  /**@return the score of the given game, or -1 if the game failed**/
+  public int getScore(int game){return buffer.get(entry(game)+13);}
+
+  /**@return the number of fuse tokens left at the end of the given game**/
+  public int getFuseTokens(int game){return buffer.get(entry(game)+14);}
+
+  /**@return the number of actions made in the given game**/
+  public int getNumActions(int game){return buffer.getShort(record(game)+12);}
+
+  /**
+   * Gives the code of an action of a game.
+   * @param game the index of the game
+   * @param action the number of the action, from 0
+   * @return the code of the action (see Action.encode())
+   * @throws IndexOutOfBoundsException if there is no such game or action
+   **/
+  public int action(int game, int action) throws IndexOutOfBoundsException{
+    int r = record(game);
+    if(action<0 || action>=buffer.getShort(r+12)) throw new IndexOutOfBoundsException("No action "+action);
+    return buffer.getInt(r+RECORD+action*4);
+  }
+
+  /**
+   * Fills a stack with the deck of a game, so that the first card dealt is at the top.
+   * @param game the index of the game
+   * @param deck the stack to fill, whose previous contents are removed
+   * @return the deck, for convenience
+   * @throws IndexOutOfBoundsException if there is no such game
+   **/
+  public Stack<Card> deck(int game, Stack<Card> deck) throws IndexOutOfBoundsException{
+    int r = record(game)+16;
+    deck.clear();
+    for(int i = DeckCorpus.DEAL_SIZE-1; i>=0; i--) deck.add(Card.fromId(buffer.get(r+i)));
+    return deck;
+  }
+
+  /**
+   * Replays a game to its end.
+   * @param game the index of the game
+   * @return the last state of the game
+   * @throws IndexOutOfBoundsException if there is no such game
+   * @throws IllegalActionException if the archived actions are not legal, which can only happen if the file is corrupt
+   **/
+  public State replay(int game) throws IndexOutOfBoundsException, IllegalActionException{
+    return replay(game, getNumActions(game));
+  }
+
+  /**
+   * Replays part of a game, through State.nextState.
+   * @param game the index of the game
+   * @param order the order of the state to reach, from 0 to the number of actions in the game
+   * @return the (global) state of the game after that many actions, from which the earlier states can also be recovered
+   * @throws IndexOutOfBoundsException if there is no such game, or the game has fewer actions
+   * @throws IllegalActionException if the archived actions are not legal, which can only happen if the file is corrupt
+   **/
+  public State replay(int game, int order) throws IndexOutOfBoundsException, IllegalActionException{
+    int r = record(game);
+    if(order<0 || order>buffer.getShort(r+12)) throw new IndexOutOfBoundsException("No state "+order);
+    String[] players = new String[buffer.get(r+8)];
+    for(int i = 0; i<players.length; i++) players[i] = "Player "+i;
+    Stack<Card> deck = deck(game, new Stack<Card>());
+    State s = new State(players, deck);
+    for(int i = 0; i<order; i++) s = s.nextState(Action.decode(buffer.getInt(r+RECORD+i*4), s), deck);
+    return s;
+  }
+
+  //the position of the index entry of a game
+  private int entry(int game){
+    if(game<0 || game>=size) throw new IndexOutOfBoundsException("No game "+game);
+    return index+game*ENTRY;
+  }
+
+  //the position of the record of a game
+  private int record(int game){return buffer.getInt(entry(game)+8);}
+
+  /**
+   * A sink that adds games to an archive.
+   * Games may be played in parallel, and their records are written in the order they end,
+   * but the index is sorted by id when the writer is closed.
+   **/
+  public static class Writer extends GameRecordWriter{
+
+    /**The archive file**/
+    private final FileChannel file;
+    /**The position in the file of the first game added by this writer**/
+    private final long base;
+    /**The index of the archive, only used while holding the lock on the output buffer, and when closing**/
+    private ByteBuffer entries;
+
+    //creates a writer, reading the index of the existing games
+    private Writer(FileChannel file) throws IOException{
+      super(file);
+      this.file = file;
+      entries = ByteBuffer.allocate(ENTRY*1024);
+      if(file.size()==0){
+        //an empty archive, so that the file is valid even if the writer is never closed
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(0).putLong(HEADER).flip();
+        while(header.hasRemaining()) file.write(header, header.position());
+      }
+      else{
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while(header.hasRemaining() && file.read(header, header.position())>=0);
+        if(header.hasRemaining() || header.getInt(0)!=MAGIC) throw new IOException("Not a game archive");
+        int count = header.getInt(4);
+        long index = header.getLong(8);
+        if(count<0 || index<HEADER || index+(long)count*ENTRY>file.size()) throw new IOException("Game archive is truncated");
+        entries = ByteBuffer.allocate(Math.max(ENTRY*1024, count*ENTRY*2));
+        entries.limit(count*ENTRY);
+        while(entries.hasRemaining() && file.read(entries, index+entries.position())>=0);
+        entries.limit(entries.capacity());
+      }
+      //the new records go after everything in the file, leaving the index in place until close
+      base = file.size();
+      file.position(base);
+    }
+
+    protected void writeStart(long gameId, State first){
+      String[] players = first.getPlayers();
+      int handSize = first.getHandView(0).size();
+      ByteBuffer b = buffer(RECORD);
+      b.putLong(gameId).put((byte)players.length).put((byte)-1).put((byte)0).put((byte)0).putShort((short)0);
+      b.putShort((short)(players.length*handSize));//the number of cards of the deck known so far
+      for(int p = 0; p<players.length; p++)
+        for(int i = 0; i<handSize; i++) b.put((byte)first.cardAt(p, i).getId());
+      b.position(RECORD);
+    }
+
+    protected void writeAction(Action action, State next){
+      int code = action.encode();
+      ByteBuffer b = buffer(4);
+      b.putInt(code);
+      if(action.getType()==ActionType.PLAY || action.getType()==ActionType.DISCARD){
+        //the card drawn, unless it was the last card, which leaves the slot empty and is found when the deck is completed
+        Card c = next.cardAt(action.getPlayer(), Action.positionOf(code));
+        if(c!=null){
+          int known = b.getShort(14);
+          b.put(16+known, (byte)c.getId());
+          b.putShort(14, (short)(known+1));
+        }
+      }
+    }
+
+    protected void writeEnd(State last, int score){
+      ByteBuffer b = buffer(0);
+      b.putShort(12, (short)((b.position()-RECORD)/4));
+      b.put(9, (byte)score).put(10, (byte)last.getFuseTokens());
+      //the cards never drawn complete the deck, in order of id
+      CardMultiset rest = CardMultiset.fullDeck();
+      int known = b.getShort(14);
+      for(int i = 0; i<known; i++) rest.remove(b.get(16+i));
+      for(int id = 0; id<Card.KINDS; id++)
+        for(int k = rest.count(id); k>0; k--) b.put(16+known++, (byte)id);
+      b.putShort(14, (short)0);
+    }
+
+    protected void gameWritten(long offset, ByteBuffer game) throws IOException{
+      long position = base+offset;
+      if(position+game.remaining()>Integer.MAX_VALUE) throw new IOException("Game archive is full");
+      if(!entries.hasRemaining()){
+        ByteBuffer bigger = ByteBuffer.allocate(entries.capacity()*2);
+        entries.flip();
+        entries = bigger.put(entries);
+      }
+      int g = game.position();
+      entries.putLong(game.getLong(g)).putInt((int)position).put(game.get(g+8)).put(game.get(g+9)).put(game.get(g+10)).put((byte)0);
+    }
+
+    /**
+     * Writes the remaining games and the index of all the games, sorted by id, and closes the file.
+     * The header is written last, once the games and the index are on disk, so until then the file holds the archive as it was.
+     * @throws IOException if the file cannot be written
+     **/
+    public void close() throws IOException{
+      try{
+        flush();
+        long index = file.position();
+        if(index>Integer.MAX_VALUE) throw new IOException("Game archive is full");
+        entries.flip();
+        entries = sorted(entries);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(entries.remaining()/ENTRY).putLong(index).flip();
+        while(entries.hasRemaining()) file.write(entries, index+entries.position());
+        file.force(true);
+        while(header.hasRemaining()) file.write(header, header.position());
+        file.force(true);
+      }
+      finally{super.close();}
+    }
+
+    //the entries of an index in order of id, keeping the order of entries with the same id
+    private static ByteBuffer sorted(ByteBuffer entries){
+      int n = entries.remaining()/ENTRY;
+      Integer[] order = new Integer[n];
+      for(int i = 0; i<n; i++) order[i] = i;
+      java.util.Arrays.sort(order, (a, b) -> Long.compare(entries.getLong(a*ENTRY), entries.getLong(b*ENTRY)));
+      ByteBuffer out = ByteBuffer.allocate(n*ENTRY);
+      for(int i = 0; i<n; i++) out.put(entries.array(), order[i]*ENTRY, ENTRY);
+      return out.flip();
+    }
+  }
+}
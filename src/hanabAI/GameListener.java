@@ -0,0 +1,20 @@
+package hanabAI;
+
+/**
+ * An agent that wants to be told of every action as it happens,
+ * so that it can keep what it knows about the game up to date without walking back through the previous states.
+ * When a game is played by Hanabi, every agent that implements this interface is told of each action,
+ * including its own, before the next player is asked for their action.
+ * Agents should still work when they are not told (for example when doAction is called directly),
+ * which they can detect from the order of the states they are given.
+ **/
+public interface GameListener{
+
+  /**
+   * Called after each action of the game.
+   * @param action the action performed
+   * @param next the state reached by the action, as seen by this agent (with its own hand hidden).
+   * The card played or discarded, if any, is next.previousCardPlayed(), and the card drawn in its place is in the same slot of the player's hand.
+   **/
+  public void actionPerformed(Action action, State next);
+}
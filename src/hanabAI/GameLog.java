@@ -0,0 +1,100 @@
+package hanabAI;
+
+import java.util.Arrays;
+
+/**
+ * The history of a game, kept as an append-only log of the encoded actions (see Action.encode())
+ * and of what each action did to the cards, so that a state need not keep its predecessors.
+ * The states of a game share one log, and each state reads only the entries before its own order.
+ * A state that is not the latest in its log (for example, when a search tries several moves from one state)
+ * appends to a copy of the entries it reads, so the log of every state is unchanged.
+ * Each entry is one long, so a complete game takes a few hundred bytes.
+ **/
+final class GameLog{
+
+  /**The card id recorded when there is no card**/
+  static final int NO_CARD = 0xFF;
+  /**The effect logged for a hint, which removes and draws no cards**/
+  static final int NONE = NO_CARD|NO_CARD<<8;
+  /**The flag set when a played card was added to its firework**/
+  static final int BUILT = 1<<16;
+  /**The flag set when the action gained a hint token**/
+  static final int HINT_GAINED = 1<<17;
+  /**The flag set when the action drew the last card, and so fixed the final action**/
+  static final int LAST_DRAW = 1<<18;
+
+  /**For each action, by the order of the state it was made in: the code of the action (low 32 bits),
+   * then the card removed from the hand (bits 32-39), the card drawn (bits 40-47) and the flags above.
+   * An entry is written in place when the array has room, and the array is copied into a larger one when it is full.
+   * Entries written in place are not published by the volatile field, so another thread sees the entries before a state
+   * only if the state was safely published to it, for example through a concurrent collection or an executor**/
+  private volatile long[] entries;
+  /**The number of actions in the log, only used while holding the lock**/
+  private int size;
+
+  /**Creates an empty log**/
+  GameLog(){this(new long[64], 0);}
+
+  //creates a log with the given entries
+  private GameLog(long[] entries, int size){
+    this.entries = entries;
+    this.size = size;
+  }
+
+  /**
+   * Gives the effect of a play or discard.
+   * @param removed the card that left the hand, or null
+   * @param drawn the card drawn to replace it, or null if the deck was empty
+   * @param flags any of BUILT, HINT_GAINED and LAST_DRAW
+   * @return the effect to be logged
+   **/
+  static int effect(Card removed, Card drawn, int flags){
+    return (removed==null?NO_CARD:removed.getId()) | (drawn==null?NO_CARD:drawn.getId())<<8 | flags;
+  }
+
+  /**
+   * Records the action made in the state of the given order.
+   * Appends are synchronized, so states of one game can be advanced from several threads,
+   * and the entries a state reads are never changed afterwards,
+   * but a state must still be safely published before another thread reads it.
+   * @param order the order of the state the action was made in
+   * @param action the code of the action
+   * @param effect the effect of the action (see effect(Card,Card,int)), or NONE for a hint
+   * @return the log of the next state, which is this log unless it already records an action at that order
+   **/
+  synchronized GameLog append(int order, int action, int effect){
+    long entry = (action&0xFFFFFFFFL) | (long)effect<<32;
+    long[] e = entries;
+    if(order!=size){
+      long[] copy = Arrays.copyOf(e, Math.max(64, order+16));
+      copy[order] = entry;
+      return new GameLog(copy, order+1);
+    }
+    if(size==e.length){
+      e = Arrays.copyOf(e, size*2);
+      e[order] = entry;
+      entries = e;
+    }
+    else e[order] = entry;
+    size++;
+    return this;
+  }
+
+  /**@return the code of the action made in the state of the given order**/
+  int action(int order){return (int)entries[order];}
+
+  /**@return the effect of the action made in the state of the given order**/
+  int effect(int order){return (int)(entries[order]>>>32);}
+
+  /**@return the card removed from the hand by the action made in the state of the given order, or null**/
+  Card removed(int order){
+    int id = effect(order)&NO_CARD;
+    return id==NO_CARD?null:Card.fromId(id);
+  }
+
+  /**@return the card drawn by the action made in the state of the given order, or null**/
+  Card drawn(int order){
+    int id = (effect(order)>>>8)&NO_CARD;
+    return id==NO_CARD?null:Card.fromId(id);
+  }
+}
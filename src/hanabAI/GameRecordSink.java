@@ -0,0 +1,36 @@
+package hanabAI;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A destination for the records of games, to which a game reports its deal, each action and its result as it is played.
+ * A sink may be given games by several threads at once (as in Tournament.run),
+ * but all the records of one game are given by the thread that started it.
+ **/
+public interface GameRecordSink extends Closeable{
+
+  /**
+   * Records the start of a game.
+   * @param gameId an identifier for the game, such as the seed of its deal
+   * @param first the first (global) state of the game
+   * @throws IOException if the record cannot be written
+   **/
+  public void startGame(long gameId, State first) throws IOException;
+
+  /**
+   * Records an action of the current game.
+   * @param action the action performed
+   * @param next the (global) state reached by the action
+   * @throws IOException if the record cannot be written
+   **/
+  public void action(Action action, State next) throws IOException;
+
+  /**
+   * Records the end of the current game.
+   * @param last the last state reached in the game
+   * @param score the score of the game, or -1 if an agent made an illegal move
+   * @throws IOException if the record cannot be written
+   **/
+  public void endGame(State last, int score) throws IOException;
+}
@@ -0,0 +1,129 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The base of the sinks that encode game records into bytes and write them to a channel.
+ * The records of each game are collected in a buffer belonging to the thread playing it,
+ * and the whole game is copied to a shared output buffer when it ends,
+ * so games played in parallel are never interleaved, and the channel is only written when the output buffer fills.
+ **/
+public abstract class GameRecordWriter implements GameRecordSink{
+
+  /**The size of the output buffer**/
+  private static final int OUTPUT_SIZE = 1<<16;
+
+  /**The channel the records are written to**/
+  private final WritableByteChannel channel;
+  /**The games waiting to be written to the channel, only used while holding the lock on it**/
+  private final ByteBuffer out = ByteBuffer.allocate(OUTPUT_SIZE);
+  /**The number of bytes of finished games passed to the output buffer, only used while holding the lock on it**/
+  private long written;
+  /**The records of the game being played by each thread**/
+  private final ThreadLocal<ByteBuffer> games = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1<<12));
+
+  /**
+   * Creates a writer.
+   * @param channel the channel to write the records to, which is closed when the writer is closed
+   **/
+  protected GameRecordWriter(WritableByteChannel channel){
+    this.channel = channel;
+  }
+
+  /**
+   * Gives the buffer of the current thread's game, with room for a record.
+   * @param size the largest number of bytes the record may take
+   * @return the buffer, to which the record should be appended
+   **/
+  protected ByteBuffer buffer(int size){
+    ByteBuffer b = games.get();
+    if(b.remaining()<size){
+      ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity()*2, b.position()+size));
+      b.flip();
+      bigger.put(b);
+      games.set(b = bigger);
+    }
+    return b;
+  }
+
+  public void startGame(long gameId, State first) throws IOException{
+    games.get().clear();
+    writeStart(gameId, first);
+  }
+
+  public void action(Action action, State next) throws IOException{
+    writeAction(action, next);
+  }
+
+  public void endGame(State last, int score) throws IOException{
+    writeEnd(last, score);
+    ByteBuffer b = games.get();
+    b.flip();
+    synchronized(out){
+      gameWritten(written, b);
+      written += b.remaining();
+      if(b.remaining()>out.remaining()) flush();
+      if(b.remaining()>out.remaining()) write(b);
+      else out.put(b);
+    }
+    b.clear();
+  }
+
+  /**
+   * Writes any buffered games to the channel.
+   * @throws IOException if the channel cannot be written
+   **/
+  public void flush() throws IOException{
+    synchronized(out){
+      out.flip();
+      write(out);
+      out.clear();
+    }
+  }
+
+  /**
+   * Writes any buffered games, and closes the channel.
+   * @throws IOException if the channel cannot be written or closed
+   **/
+  public void close() throws IOException{
+    flush();
+    channel.close();
+  }
+
+  //writes the remaining bytes of a buffer to the channel
+  private void write(ByteBuffer b) throws IOException{
+    while(b.hasRemaining()) channel.write(b);
+  }
+
+  /**
+   * Called, in the order the games are written, as the records of each finished game are passed to the output buffer.
+   * This does nothing by default.
+   * @param offset the number of bytes written by this writer before the game
+   * @param game the records of the game, from its position to its limit, which must not be changed
+   * @throws IOException if the game cannot be accepted
+   **/
+  protected void gameWritten(long offset, ByteBuffer game) throws IOException{}
+
+  /**
+   * Appends the record of the start of a game to the current thread's buffer.
+   * @param gameId an identifier for the game
+   * @param first the first state of the game
+   **/
+  protected abstract void writeStart(long gameId, State first) throws IOException;
+
+  /**
+   * Appends the record of an action to the current thread's buffer.
+   * @param action the action performed
+   * @param next the state reached by the action
+   **/
+  protected abstract void writeAction(Action action, State next) throws IOException;
+
+  /**
+   * Appends the record of the end of a game to the current thread's buffer.
+   * @param last the last state of the game
+   * @param score the score of the game, or -1
+   **/
+  protected abstract void writeEnd(State last, int score) throws IOException;
+}
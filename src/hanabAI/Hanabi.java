@@ -11,35 +11,81 @@ public class Hanabi{
   private Agent[] players;
   private State state;
   private java.util.Stack<Card> deck;
+  private TurnMetrics metrics;
+  private long moveNanos;
+  private java.util.function.Supplier<? extends Agent> fallback;
+  private Agent[] fallbacks;
 
   /**
    * Initilaises the game.
    * @throws IllegalArgumentException if there are not the right number of player
    * */ 
   public Hanabi(Agent[] agents) throws IllegalArgumentException{
+    this(agents, Card.shuffledDeck());
+  }
+
+  /**
+   * Initilaises the game with a deal determined by the seed, so that the game can be replayed.
+   * @throws IllegalArgumentException if there are not the right number of player
+   * */
+  public Hanabi(Agent[] agents, long seed) throws IllegalArgumentException{
+    this(agents, Card.shuffledDeck(seed));
+  }
+
+  /**
+   * Initilaises the game with the given deck.
+   * @param deck the shuffled deck to deal from, which is used up as the game is played
+   * @throws IllegalArgumentException if there are not the right number of player, or the deck is not complete
+   * */
+  public Hanabi(Agent[] agents, java.util.Stack<Card> deck) throws IllegalArgumentException{
     //check agents between 2 and 5
     players = agents;
-    deck = Card.shuffledDeck();
+    this.deck = deck;
     String[] s = new String[agents.length];
     for(int i=0; i<s.length; i++)s[i] = agents[i].toString();
     state = new State(s, deck);
   }
 
+  /**
+   * Measures every turn of the game when it is played: the time and allocation of each agent's decisions, and the time of the engine.
+   * @param metrics the measurements to add to, which may be shared by many games, or null to play without measuring
+   **/
+  public void setMetrics(TurnMetrics metrics){this.metrics = metrics;}
+
+  /**
+   * Gives every agent a time limit for each action.
+   * TimedAgents are given the deadline, so that they can stop in time.
+   * Agents are not interrupted, but if an agent returns its action after the deadline,
+   * the action is replaced by that of a default agent for the same seat.
+   * The default agents are created when the game starts, are told of every action if they are GameListeners,
+   * and decide every turn of their seat before the seated agent is asked, so that their action is ready if the deadline passes
+   * and a late move is replaced without waiting for the default agent. Their time is not counted against the deadline.
+   * If a default agent fails, the late action is kept.
+   * @param nanos the time allowed for each action, in nanoseconds, or 0 for no limit
+   * @param fallback a supplier of the default agents, such as BasicAgent::new
+   * @throws IllegalArgumentException if a limit is given without a supplier of default agents
+   **/
+  public void setDeadline(long nanos, java.util.function.Supplier<? extends Agent> fallback) throws IllegalArgumentException{
+    if(nanos>0 && fallback==null) throw new IllegalArgumentException("A default agent is required");
+    moveNanos = Math.max(nanos, 0);
+    this.fallback = fallback;
+  }
+
   /**
    * Plays the game.
    * The agents will execute their strategies until the game is complete and a number is returned.
    * @return the score for the game
    **/
   public int play(){
+    start();
     try{
       while(!state.gameOver()){
-        int p = state.getNextPlayer();
-        State localState = state.hideHand(p);
-        state = state.nextState(players[p].doAction(localState),deck);
+        turn(state.getNextPlayer());
       }
       return state.getScore();
     }
     catch(IllegalActionException e){return -1;}
+    finally{end();}
   }
 
   /**
@@ -50,11 +96,10 @@ public class Hanabi{
    **/
   public int play(StringBuffer log){
     log.append(state);
+    start();
     try{
       while(!state.gameOver()){
-        int p = state.getNextPlayer();
-        State localState = state.hideHand(p);
-        state = state.nextState(players[p].doAction(localState),deck);
+        turn(state.getNextPlayer());
         log.append(state.toString());
       }
       return state.getScore();
@@ -63,6 +108,110 @@ public class Hanabi{
       e.printStackTrace();
       return -1;
     }
+    finally{end();}
+  }
+
+  /**
+   * Plays the game, reporting the deal, each action and the result to a sink as the game is played.
+   * If an agent fails, the game is ended in the sink with a score of -1 before the exception is passed on.
+   * @param gameId an identifier for the game, such as the seed of its deal, passed on to the sink
+   * @param sink the sink that records the game
+   * @return the score of the game, or -1 if an agent made an illegal move
+   * @throws IOException if the sink cannot record the game
+   **/
+  public int play(long gameId, GameRecordSink sink) throws java.io.IOException{
+    sink.startGame(gameId, state);
+    int score = -1;
+    start();
+    try{
+      while(!state.gameOver()){
+        Action a = turn(state.getNextPlayer());
+        sink.action(a, state);
+      }
+      score = state.getScore();
+    }
+    catch(IllegalActionException e){}
+    catch(RuntimeException e){
+      sink.endGame(state, -1);
+      throw e;
+    }
+    finally{end();}
+    sink.endGame(state, score);
+    return score;
+  }
+
+  //creates the default agents if there is a time limit, and tells the reusable agents that the game is starting, and which seat each has
+  private void start(){
+    fallbacks = moveNanos==0?null:new Agent[players.length];
+    for(int p = 0; p<players.length; p++){
+      if(fallbacks!=null) fallbacks[p] = fallback.get();
+      startGame(players[p], p);
+      if(fallbacks!=null) startGame(fallbacks[p], p);
+    }
+  }
+
+  //tells an agent that the game is starting, if it is reusable
+  private void startGame(Agent a, int seat){
+    if(a instanceof ReusableAgent) ((ReusableAgent)a).startGame(players.length, seat);
+  }
+
+  //tells the reusable agents, and the default agents, that the game is over
+  private void end(){
+    for(int p = 0; p<players.length; p++){
+      if(players[p] instanceof ReusableAgent) ((ReusableAgent)players[p]).endGame();
+      if(fallbacks!=null && fallbacks[p] instanceof ReusableAgent) ((ReusableAgent)fallbacks[p]).endGame();
+    }
+  }
+
+  //lets a player move, measuring the turn if required, tells the listening agents, and gives the action made
+  private Action turn(int p) throws IllegalActionException{
+    Action backup = backup(p);
+    if(metrics==null){
+      Action a = decide(p, state.hideHand(p), backup);
+      state = state.nextState(a,deck);
+      tell(a);
+      return a;
+    }
+    long t0 = System.nanoTime();
+    State localState = state.hideHand(p);
+    long bytes = TurnMetrics.allocatedBytes();
+    long t1 = System.nanoTime();
+    Action a = decide(p, localState, backup);
+    long t2 = System.nanoTime();
+    if(bytes>=0) bytes = TurnMetrics.allocatedBytes()-bytes;
+    state = state.nextState(a,deck);
+    long t3 = System.nanoTime();
+    metrics.agentTurn(players[p], t2-t1, bytes);
+    metrics.engineTurn((t1-t0)+(t3-t2));
+    tell(a);
+    return a;
+  }
+
+  //tells every listening agent, and every listening default agent, of an action, giving each its own view of the state reached
+  private void tell(Action a) throws IllegalActionException{
+    for(int q = 0; q<players.length; q++){
+      if(players[q] instanceof GameListener) ((GameListener)players[q]).actionPerformed(a, state.hideHand(q));
+      if(fallbacks!=null && fallbacks[q] instanceof GameListener) ((GameListener)fallbacks[q]).actionPerformed(a, state.hideHand(q));
+    }
+  }
+
+  //the action of the default agent of a seat, or null if there is none or it fails
+  private Action backup(int p) throws IllegalActionException{
+    if(fallbacks==null) return null;
+    try{return fallbacks[p].doAction(state.hideHand(p));}
+    catch(RuntimeException e){return null;}
+  }
+
+  //asks a player for their action, within the time limit if there is one, replacing a late action by the default agent's
+  private Action decide(int p, State localState, Action backup){
+    if(moveNanos==0) return players[p].doAction(localState);
+    Deadline deadline = Deadline.after(moveNanos);
+    Action a = players[p] instanceof TimedAgent ? ((TimedAgent)players[p]).doAction(localState, deadline) : players[p].doAction(localState);
+    if(deadline.expired()){
+      if(metrics!=null) metrics.missedDeadline(players[p]);
+      if(backup!=null) a = backup;
+    }
+    return a;
   }
 
   public static String critique(int score){
@@ -0,0 +1,291 @@
+package hanabAI;
+import java.util.SplittableRandom;
+
+/**
+ * Draws the cards a player cannot see, their own hand and the order of the deck, consistently with what they have been told,
+ * for agents that search over sampled deals (determinizations).
+ * For every slot of every hand the sampler keeps the mask of card ids the card may be, given the hints made since it was drawn
+ * (bit id is set if the card may have that id, see Card.getId()), and it counts the cards the observer has not seen.
+ * The observer's hand is drawn a slot at a time: each slot takes a kind its mask allows, chosen with probability
+ * in proportion to the copies of that kind left, among the kinds that leave the remaining slots a consistent assignment.
+ * Whether a choice leaves a consistent assignment is decided by Hall's condition
+ * (every set of slots must together allow at least as many cards as there are slots),
+ * kept for every set of the observer's slots, so no sample is ever rejected.
+ * The cards left over are shuffled to make the deck.
+ * Sampling creates no objects. A sampler is not safe for use by several threads at once,
+ * but a copy can be made for each thread with set(HandSampler).
+ **/
+public class HandSampler{
+
+  /**The mask of every card id**/
+  public static final int ALL = (1<<Card.KINDS)-1;
+  private static final Colour[] COLOURS = Colour.values();
+
+  private int numPlayers;
+  private int handSize;
+  private int observer;
+  /**For each player and slot, the mask of ids the card may have, or 0 for an empty slot**/
+  private int[] possible;
+  /**The order of the first state whose action has not yet been taken into account**/
+  private int processed;
+  /**False until the first update, and after a reset**/
+  private boolean current;
+  /**The number of copies of each kind the observer has not seen**/
+  private final int[] unseen = new int[Card.KINDS];
+  /**The total number of cards the observer has not seen**/
+  private int unseenSize;
+  /**The observer's slots that hold cards**/
+  private final int[] slots = new int[5];
+  private int numSlots;
+  /**For each set of the observer's non-empty slots (a bitmask over slots), the union of their masks,
+   * the number of unseen cards in it, and the size of the set**/
+  private final int[] union = new int[32];
+  private final int[] available = new int[32];
+  private final int[] setSize = new int[32];
+
+  //working storage for sampling
+  private final int[] counts = new int[Card.KINDS];
+  private final int[] remaining = new int[32];
+  private final byte[] hand = new byte[5];
+  private final byte[] deck = new byte[50];
+
+  /**
+   * Creates a sampler, which knows nothing until it is updated with a state.
+   **/
+  public HandSampler(){}
+
+  /**
+   * Brings the sampler up to date with a state, taking into account the actions made since the last update.
+   * The first update, and any update with a state from a different game or an earlier point of the game, starts again from the start of the game.
+   * If the hints received by the observer cannot all be satisfied (which can only happen if they were given dishonestly),
+   * the observer's hand is drawn ignoring them.
+   * @param s the state, as seen by the observer
+   **/
+  public void update(State s){
+    if(!current || s.getOrder()<processed || s.getObserver()!=observer || s.getPlayers().length!=numPlayers){
+      numPlayers = s.getPlayers().length;
+      handSize = s.getHandView(0).size();
+      observer = s.getObserver();
+      if(possible==null || possible.length!=numPlayers*handSize) possible = new int[numPlayers*handSize];
+      java.util.Arrays.fill(possible, ALL);
+      current = true;
+      processed = 0;
+    }
+    int count = s.getOrder()-processed;
+    if(count>0){
+      int[] codes = new int[count];
+      State t = s;
+      for(int i = count-1; i>=0; i--){
+        codes[i] = t.getPreviousAction().encode();
+        t = t.getPreviousState();
+      }
+      int lastDraw = s.getFinalActionIndex()==-1?Integer.MAX_VALUE:s.getFinalActionIndex()-numPlayers;
+      for(int i = 0; i<count; i++){
+        int code = codes[i];
+        switch(Action.typeOf(code)){
+          case PLAY: case DISCARD:
+            possible[Action.playerOf(code)*handSize+Action.positionOf(code)] = processed+i>=lastDraw?0:ALL;
+            break;
+          default: hint(possible, handSize, code);
+        }
+      }
+      processed = s.getOrder();
+    }
+    countUnseen(s);
+    prepare();
+  }
+
+  /**
+   * Forgets the game, so that the next update starts again from the start of a game, for a sampler reused in a new game.
+   **/
+  public void reset(){current = false;}
+
+  //counts the cards not in another hand, the discard pile or a firework
+  private void countUnseen(State s){
+    unseenSize = 0;
+    for(int id = 0; id<Card.KINDS; id++){
+      int v = id%5+1;
+      unseen[id] = (v==1?3:(v<5?2:1))-s.discardCount(id);
+      if(s.fireworkHeight(COLOURS[id/5])>=v) unseen[id]--;
+    }
+    for(int p = 0; p<numPlayers; p++){
+      if(p==observer) continue;
+      for(int i = 0; i<handSize; i++){
+        Card c = s.cardAt(p, i);
+        if(c!=null) unseen[c.getId()]--;
+      }
+    }
+    for(int id = 0; id<Card.KINDS; id++) unseenSize += unseen[id];
+  }
+
+  //works out the union and the unseen cards of every set of the observer's slots, relaxing the masks if Hall's condition fails
+  private void prepare(){
+    numSlots = 0;
+    int base = observer*handSize;
+    for(int i = 0; i<handSize; i++) if(possible[base+i]!=0) slots[numSlots++] = i;
+    if(!tabulate()){
+      for(int j = 0; j<numSlots; j++) possible[base+slots[j]] = ALL;
+      tabulate();
+    }
+  }
+
+  //fills in the tables for every set of slots, and tells whether every set satisfies Hall's condition
+  private boolean tabulate(){
+    boolean consistent = true;
+    int base = observer*handSize;
+    union[0] = 0;
+    available[0] = 0;
+    setSize[0] = 0;
+    for(int set = 1; set<1<<numSlots; set++){
+      int j = Integer.numberOfTrailingZeros(set);
+      int rest = set&(set-1);
+      union[set] = union[rest]|possible[base+slots[j]];
+      setSize[set] = setSize[rest]+1;
+      available[set] = count(unseen, union[set]);
+      if(available[set]<setSize[set]) consistent = false;
+    }
+    return consistent;
+  }
+
+  //the number of cards of the kinds in a mask
+  private static int count(int[] counts, int mask){
+    int n = 0;
+    for(int m = mask; m!=0; m &= m-1) n += counts[Integer.numberOfTrailingZeros(m)];
+    return n;
+  }
+
+  /**
+   * Makes this sampler a copy of another, so that it draws from the same deals.
+   * Apart from the first copy in a game, no objects are created.
+   * @param s the sampler to copy
+   **/
+  public void set(HandSampler s){
+    if(possible==null || possible.length!=s.possible.length) possible = s.possible.clone();
+    else System.arraycopy(s.possible, 0, possible, 0, possible.length);
+    numPlayers = s.numPlayers;
+    handSize = s.handSize;
+    observer = s.observer;
+    processed = s.processed;
+    current = s.current;
+    System.arraycopy(s.unseen, 0, unseen, 0, Card.KINDS);
+    unseenSize = s.unseenSize;
+    System.arraycopy(s.slots, 0, slots, 0, slots.length);
+    numSlots = s.numSlots;
+    System.arraycopy(s.union, 0, union, 0, union.length);
+    System.arraycopy(s.available, 0, available, 0, available.length);
+    System.arraycopy(s.setSize, 0, setSize, 0, setSize.length);
+  }
+
+  /**@return the player whose hidden cards are drawn**/
+  public int getObserver(){return observer;}
+
+  /**@return the number of cards the observer has not seen: those in their hand and the deck**/
+  public int getUnseenSize(){return unseenSize;}
+
+  /**
+   * Gives the number of copies of a kind the observer has not seen.
+   * @param id the id of the kind
+   * @return the number of those cards in the observer's hand or the deck
+   **/
+  public int unseenCount(int id){return unseen[id];}
+
+  /**
+   * Gives the kinds a card may be, from the hints its holder has been given.
+   * This is what every player knows about the card, whether or not they can see it.
+   * @param player the player holding the card
+   * @param slot the position of the card in the hand
+   * @return a mask with bit id set if the card may have that id, or 0 if the slot is empty
+   **/
+  public int possible(int player, int slot){return possible[player*handSize+slot];}
+
+  /**
+   * Copies the masks of every slot, player by player, to an array, for a search to narrow as it simulates hints.
+   * @param masks an array with room for a mask for every slot of every hand
+   **/
+  public void copyPossible(int[] masks){System.arraycopy(possible, 0, masks, 0, possible.length);}
+
+  /**
+   * Draws the observer's hand and the deck.
+   * @param random the source of randomness
+   * @param hand filled with the id of the card in each slot of the observer's hand, or -1 for an empty slot
+   * @param deck filled with the ids of the cards in the deck, in a random order
+   * @return the number of cards in the deck
+   **/
+  public int sample(SplittableRandom random, byte[] hand, byte[] deck){
+    System.arraycopy(unseen, 0, counts, 0, Card.KINDS);
+    int sets = 1<<numSlots;
+    System.arraycopy(available, 0, remaining, 0, sets);
+    int base = observer*handSize;
+    for(int i = 0; i<handSize; i++) hand[i] = -1;
+    int left = sets-1;//the slots still to be filled
+    for(int j = 0; j<numSlots; j++){
+      left &= ~(1<<j);
+      //a kind cannot be taken if it is allowed by a set of the slots left with no spare cards
+      int forbidden = 0;
+      for(int set = left; set!=0; set = (set-1)&left)
+        if(remaining[set]==setSize[set]) forbidden |= union[set];
+      int allowed = possible[base+slots[j]]&~forbidden;
+      int r = random.nextInt(count(counts, allowed));
+      int id = 0;
+      for(int m = allowed; ; m &= m-1){
+        id = Integer.numberOfTrailingZeros(m);
+        r -= counts[id];
+        if(r<0) break;
+      }
+      counts[id]--;
+      hand[slots[j]] = (byte)id;
+      int bit = 1<<id;
+      for(int set = 1; set<sets; set++) if((union[set]&bit)!=0) remaining[set]--;
+    }
+    int size = 0;
+    for(int id = 0; id<Card.KINDS; id++)
+      for(int k = counts[id]; k>0; k--) deck[size++] = (byte)id;
+    for(int i = size-1; i>0; i--){
+      int j = random.nextInt(i+1);
+      byte b = deck[i];
+      deck[i] = deck[j];
+      deck[j] = b;
+    }
+    return size;
+  }
+
+  /**
+   * Draws the observer's hand and the deck, and puts them in a simulator.
+   * @param random the source of randomness
+   * @param sim a simulator of the game at the state the sampler was last updated with
+   **/
+  public void sample(SplittableRandom random, Simulator sim){
+    int size = sample(random, hand, deck);
+    for(int i = 0; i<handSize; i++) sim.setCard(observer, i, hand[i]);
+    sim.setDeck(deck, 0, size);
+  }
+
+  /**
+   * Gives the kinds of card a hint describes.
+   * @param code the code of a hint (see Action.encode())
+   * @return the mask of the ids of the colour or value hinted, or ALL if the hint names no colour or value
+   **/
+  public static int hintKinds(int code){
+    int h = Action.hintOf(code);
+    if(Action.typeOf(code)==ActionType.HINT_COLOUR) return h<5?31<<(h*5):ALL;
+    return h>=1 && h<=5?0x108421<<(h-1):ALL;//one bit for each colour
+  }
+
+  /**
+   * Narrows the masks of the hand given a hint: the cards pointed to are of the kinds hinted, and the others are not.
+   * @param masks the masks of every slot, player by player, as given by copyPossible
+   * @param handSize the number of cards in a hand
+   * @param code the code of the hint (see Action.encode())
+   **/
+  public static void hint(int[] masks, int handSize, int code){
+    int kinds = hintKinds(code);
+    if(kinds==ALL) return;
+    int base = Action.positionOf(code)*handSize;
+    int cards = Action.maskOf(code);
+    for(int i = 0; i<handSize; i++){
+      if(masks[base+i]==0) continue;
+      if((cards&(1<<i))!=0) masks[base+i] &= kinds;
+      else masks[base+i] &= ~kinds;
+    }
+  }
+}
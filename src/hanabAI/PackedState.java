@@ -0,0 +1,551 @@
+package hanabAI;
+import java.util.*;
+/**
+ * A compact representation of the game state in Hanabi.
+ * PackedState follows exactly the same rules as State,
+ * but the whole game is held in a handful of primitive fields rather than in stacks and maps:
+ * the height of each firework is packed into a single long,
+ * the discard pile is kept as a count per card kind (plus the order the cards were discarded in),
+ * and the hands are stored as card ids.
+ * Like State, the class is designed as an immutable object,
+ * and arrays are shared between successive states until they are changed.
+ * The method asState() exposes a PackedState through the State API, so existing agents can be given a PackedState.
+ **/
+public final class PackedState{
+
+  /**The card id marking an empty slot in a hand**/
+  public static final byte EMPTY = -1;
+  /**The number of bits used for the height of each firework**/
+  private static final int FIREWORK_BITS = 3;
+  /**The number of bits used for the discard count of each card kind**/
+  private static final int DISCARD_BITS = 2;
+  /**The colours, indexed by ordinal**/
+  private static final Colour[] COLOURS = Colour.values();
+
+  /**The name of each of the players in the game (never modified, so shared by all states of a game)**/
+  private final String[] players;
+  /**The number of cards in each hand**/
+  private final int handSize;
+  /**The height of each firework, FIREWORK_BITS bits per colour, indexed by colour ordinal**/
+  private long fireworks;
+  /**The number of each card kind in the discard pile, DISCARD_BITS bits per card id**/
+  private long discardCounts;
+  /**The ids of the discarded cards, in the order they were discarded**/
+  private byte[] discards;
+  /**The card ids of each hand, stored player by player, with EMPTY for a slot with no card**/
+  private byte[] hands;
+  /**The number of hints remaining**/
+  private byte hints;
+  /**The number of fuse tokens left**/
+  private byte fuse;
+  /**The observer of this state, or -1 if the state is global**/
+  private byte observer;
+  /**The index of the next player to move**/
+  private byte nextPlayer;
+  /**The order of this state in the game**/
+  private int order;
+  /**The final play of the game (for when the deck runs out)**/
+  private int finalAction;
+  /**The previous state of the game, or null for the first state**/
+  private PackedState previousState;
+  /**The action that led to this state**/
+  private Action previousAction;
+
+  /**A constructor for the first state in the game
+   * @param players the names of the players in the game, in an array by index
+   * @param deck the shuffled deck of cards to be used for the deal
+   * @throws IllegalArgumentException if arguments are null, or the wrong size**/
+  public PackedState(String[] players, Stack<Card> deck) throws IllegalArgumentException{
+    if(players==null || players.length<2 || players.length >5 || deck == null || deck.size() !=50)
+      throw new IllegalArgumentException("incorrect parameters");
+    this.players = players.clone();
+    handSize = players.length>3?4:5;
+    discards = new byte[0];
+    hands = new byte[players.length*handSize];
+    for(int i = 0; i<hands.length; i++) hands[i] = id(deck.pop());
+    hints = 8;
+    fuse = 3;
+    observer = -1;
+    nextPlayer = 0;
+    order = 0;
+    finalAction = -1;
+  }
+
+  /**A constructor that packs a snapshot of an existing state.
+   * Only a global state may be packed: a state seen by an observer cannot tell a hidden card from an empty slot,
+   * so its packed hand would have no cards to play or discard. A local packed state can be made with hideHand.
+   * The previous action is kept, but earlier states are not, so the packed state has no previous state.
+   * @param s the global state to be packed
+   * @throws IllegalArgumentException if the state has an observer**/
+  public PackedState(State s) throws IllegalArgumentException{
+    if(s.getObserver()!=-1) throw new IllegalArgumentException("Only a global state may be packed");
+    players = s.getPlayers();
+    handSize = s.getHand(0).length;
+    for(Colour c: Colour.values())
+      fireworks |= ((long)s.getFirework(c).size())<<(c.ordinal()*FIREWORK_BITS);
+    Stack<Card> d = s.getDiscards();
+    discards = new byte[d.size()];
+    for(int i = 0; i<discards.length; i++){
+      discards[i] = id(d.get(i));
+      if(discards[i]!=EMPTY) discardCounts += 1L<<(discards[i]*DISCARD_BITS);
+    }
+    hands = new byte[players.length*handSize];
+    for(int p = 0; p<players.length; p++){
+      Card[] hand = s.getHand(p);
+      for(int j = 0; j<handSize; j++) hands[p*handSize+j] = id(hand[j]);
+    }
+    hints = (byte)s.getHintTokens();
+    fuse = (byte)s.getFuseTokens();
+    observer = -1;
+    nextPlayer = (byte)(s.getOrder()%players.length);
+    order = s.getOrder();
+    finalAction = s.getFinalActionIndex();
+    previousAction = s.getPreviousAction();
+  }
+
+  //copy constructor, sharing all arrays with the original
+  private PackedState(PackedState s){
+    players = s.players;
+    handSize = s.handSize;
+    fireworks = s.fireworks;
+    discardCounts = s.discardCounts;
+    discards = s.discards;
+    hands = s.hands;
+    hints = s.hints;
+    fuse = s.fuse;
+    observer = s.observer;
+    nextPlayer = s.nextPlayer;
+    order = s.order;
+    finalAction = s.finalAction;
+    previousState = s.previousState;
+    previousAction = s.previousAction;
+  }
+
+  /**
+   * Gives the id of a card (see Card.getId()), allowing for empty slots.
+   * @param c the card
+   * @return the id of the card, or EMPTY if the card is null
+   **/
+  public static byte id(Card c){return c==null?EMPTY:(byte)c.getId();}
+
+  /**
+   * Gives the canonical card with the given id, allowing for empty slots.
+   * @param id the id of a card, as given by id(Card)
+   * @return the card with the given id, or null if the id is EMPTY
+   **/
+  public static Card card(int id){return id==EMPTY?null:Card.fromId(id);}
+
+  /**
+   *A method to create the next state from the given state and a move.
+   *The result is exactly the same as State.nextState would give for the same state, action and deck.
+   *@param action the action made
+   *@param deck the deck of cards
+   *@throws IllegalActionException if the move is not legal in the current state, or one hand has been hidden.
+   **/
+  public PackedState nextState(Action action, Stack<Card> deck) throws IllegalActionException{
+    if(!legalAction(action)) throw new IllegalActionException("Invalid action!: "+action);
+    if(gameOver()) throw new IllegalActionException("Game Over!");
+    if(observer!=-1) throw new IllegalActionException("Next state unavailable!");
+    PackedState s = new PackedState(this);
+    switch(action.getType()){
+      case PLAY:
+        int slot = action.getPlayer()*handSize+action.getCard();
+        int c = hands[slot];
+        if(c==EMPTY) throw new NullPointerException("No card at position "+action.getCard());
+        int colour = c/5;
+        int height = fireworkHeight(colour);
+        if(height==c%5){
+          s.fireworks += 1L<<(colour*FIREWORK_BITS);
+          if(height==4 && s.hints<8) s.hints++;
+        }
+        else{
+          s.discard(c);
+          s.fuse--;
+        }
+        s.draw(slot, deck);
+        break;
+      case DISCARD:
+        slot = action.getPlayer()*handSize+action.getCard();
+        s.discard(hands[slot]);
+        s.draw(slot, deck);
+        if(hints<8) s.hints++;
+        break;
+      case HINT_COLOUR:
+        s.hints--;
+        break;
+      case HINT_VALUE:
+        s.hints--;
+        break;
+      default: break;
+    }
+    s.order++;
+    s.previousAction = action;
+    s.nextPlayer = (byte)((nextPlayer+1)%players.length);
+    s.previousState = this;
+    return s;
+  }
+
+  //adds a card to the discard pile of this (new) state
+  private void discard(int c){
+    byte[] d = Arrays.copyOf(discards, discards.length+1);
+    d[discards.length] = (byte)c;
+    discards = d;
+    if(c!=EMPTY) discardCounts += 1L<<(c*DISCARD_BITS);
+  }
+
+  //replaces the card at the given slot of this (new) state from the deck, following the rules of State.nextState
+  private void draw(int slot, Stack<Card> deck){
+    hands = hands.clone();
+    if(!deck.isEmpty()) hands[slot] = id(deck.pop());
+    if(deck.isEmpty()){
+      if(finalAction==-1) finalAction = order+players.length;
+      hands[slot] = EMPTY;
+    }
+  }
+
+  /**
+   *A method to create a local state from a global state.
+   *That is, if there is no current observer, the specified observer will have their hand hidden from them.
+   *@param observer the player observing the game state
+   *@throws IllegalActionException if the observer is out of bounds, or if the state is not global.
+   **/
+  public PackedState hideHand(int observer) throws IllegalActionException{
+    if(this.observer==-1 && observer>=0 && observer < players.length){
+      PackedState local = new PackedState(this);
+      local.observer = (byte)observer;
+      return local;
+    }
+    else throw new IllegalActionException("Hand already hidden, or observer out of bounds");
+  }
+
+  /**
+   * Test the legality of a Action, following the same rules as State.legalAction.
+   * If the observer of a state is specified, this mathod can only be applied to actions performed by the observer.
+   * @param a the move to be tested
+   * @return true if the move is legal in the current game state.
+   * @throws IllegalActionException
+   **/
+  public boolean legalAction(Action a) throws IllegalActionException{
+    if(observer!=-1 && a.getPlayer()!=observer) throw new IllegalActionException("Local states may only test the legality of observers moves");
+    if(a.getPlayer()!=nextPlayer) return false;
+    switch(a.getType()){
+      case PLAY:
+        return (a.getCard()>=0 && a.getCard()<handSize);
+      case DISCARD:
+        if(hints==8) throw new IllegalActionException("Discards cannot be made when there are 8 hint tokens");
+        return (a.getCard()>=0 && a.getCard()<handSize);
+      case HINT_COLOUR:
+      case HINT_VALUE:
+        if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>players.length || a.getHintReceiver() == a.getPlayer()) return false;
+        int start = a.getHintReceiver()*handSize;
+        if(start>=hands.length) throw new ArrayIndexOutOfBoundsException(a.getHintReceiver());
+        return a.getHintSize()==handSize && a.getHintMask()==hintMask(hands, start, handSize, a);
+      default: return false;
+    }
+  }
+
+  /**
+   * Generates the legal moves of the next player, as int codes, in the same way as State.legalMoves.
+   * @param moves an array of at least Action.MAX_MOVES ints to hold the moves
+   * @return the number of moves generated, or 0 if the game is over
+   **/
+  public int legalMoves(int[] moves){
+    if(gameOver()) return 0;
+    return legalMoves(moves, hands, handSize, players.length, nextPlayer, hints);
+  }
+
+  /**
+   * Generates the legal moves of a player from card ids, in the same way as State.legalMoves.
+   * @param moves the array to hold the moves
+   * @param hands the card ids of each hand, stored player by player
+   * @param handSize the number of cards in each hand
+   * @param numPlayers the number of players
+   * @param player the player to move
+   * @param hints the number of hint tokens available
+   * @return the number of moves generated
+   **/
+  static int legalMoves(int[] moves, byte[] hands, int handSize, int numPlayers, int player, int hints){
+    int n = 0;
+    int start = player*handSize;
+    for(int i = 0; i<handSize; i++) if(hands[start+i]!=EMPTY) moves[n++] = Action.encodePlay(player,i);
+    if(hints<8)
+      for(int i = 0; i<handSize; i++) if(hands[start+i]!=EMPTY) moves[n++] = Action.encodeDiscard(player,i);
+    if(hints>0)
+      for(int i = 1; i<numPlayers; i++){
+        int r = (player+i)%numPlayers;
+        n = State.hintMoves(moves, n, player, r, hintMasks(hands, r*handSize, handSize), handSize);
+      }
+    return n;
+  }
+
+  /**
+   * Computes the hint masks for a hand of card ids, laid out as for State.hintMasks(Card[]).
+   * @param hands an array of card ids
+   * @param start the index of the first card of the hand in the array
+   * @param handSize the number of cards in the hand
+   * @return the colour masks, then the value masks (from bit 25), then the empty slots (from bit 50)
+   **/
+  static long hintMasks(byte[] hands, int start, int handSize){
+    long masks = 0;
+    for(int i = 0; i<handSize; i++){
+      int c = hands[start+i];
+      if(c==EMPTY) masks |= 1L<<(50+i);
+      else masks |= (1L<<((c/5)*5+i)) | (1L<<(25+(c%5)*5+i));
+    }
+    return masks;
+  }
+
+  /**
+   * Gives the cards of a hand that a hint refers to, as State.legalAction determines them.
+   * @param hands an array of card ids
+   * @param start the index of the first card of the hand in the array
+   * @param handSize the number of cards in the hand
+   * @param a the hint
+   * @return a bitmask with bit i set if and only if the ith card of the hand matches the hint
+   * @throws IllegalActionException if the action is not a hint
+   **/
+  static int hintMask(byte[] hands, int start, int handSize, Action a) throws IllegalActionException{
+    int mask = 0;
+    if(a.getType()==ActionType.HINT_COLOUR){
+      Colour colour = a.getColour();
+      for(int i = 0; i<handSize; i++){
+        int c = hands[start+i];
+        if((c==EMPTY?null:COLOURS[c/5])==colour) mask |= 1<<i;
+      }
+    }
+    else{
+      int value = a.getValue();
+      for(int i = 0; i<handSize; i++){
+        int c = hands[start+i];
+        if((c==EMPTY?-1:c%5+1)==value) mask |= 1<<i;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Gives and array of all the player names in the game.
+   * @return an array containing the naems of the players in the game, by ther index in the game.
+   **/
+  public String[] getPlayers(){return players.clone();}
+
+  /**
+   * Gives a players name
+   * @return the name of the specified player
+   **/
+  public String getName(int player){return players[player];}
+
+  /**
+   * Gives the cards of the specified player
+   * @param player the index of the player is the game
+   * @return an array of cards in player's hand, or an empty array, if the cards are hidden.
+   * @throws ArrayIndexOutOfBounds if there is no player of the given index.
+   **/
+  public Card[] getHand(int player) throws ArrayIndexOutOfBoundsException{
+    if(player<0 || player>=players.length) throw new ArrayIndexOutOfBoundsException();
+    Card[] hand = new Card[handSize];
+    if(player==observer) return hand;
+    for(int i = 0; i<handSize; i++) hand[i] = card(hands[player*handSize+i]);
+    return hand;
+  }
+
+  /**
+   * Gives the id of the card in the specified slot of a player's hand, without creating any objects.
+   * @param player the index of the player in the game
+   * @param slot the position of the card in the player's hand
+   * @return the id of the card, or EMPTY if the slot is empty or hidden from the observer
+   * @throws ArrayIndexOutOfBounds if there is no such player or slot.
+   **/
+  public int cardId(int player, int slot) throws ArrayIndexOutOfBoundsException{
+    if(player<0 || player>=players.length || slot<0 || slot>=handSize) throw new ArrayIndexOutOfBoundsException();
+    return player==observer?EMPTY:hands[player*handSize+slot];
+  }
+
+  /**
+   * Gives the card in one position of a player's hand.
+   * @param player the index of the player in the game
+   * @param slot the position of the card in the player's hand
+   * @return the canonical card, or null if the slot is empty or hidden from the observer
+   * @throws ArrayIndexOutOfBounds if there is no such player or slot.
+   **/
+  public Card cardAt(int player, int slot) throws ArrayIndexOutOfBoundsException{return card(cardId(player, slot));}
+
+  /**
+   * Gives the number of cards in each hand.
+   * @return 5 for games of 2 or 3 players, and 4 otherwise
+   **/
+  public int getHandSize(){return handSize;}
+
+  /**
+   * Gives the previous state of the game, allowing agents to determine the recent actions in the game.
+   * @return the previous state, with the same observer as the current state, or null if this is the first state.
+   **/
+  public PackedState getPreviousState(){
+    if(previousState==null || previousState.observer==observer) return previousState;
+    PackedState s = new PackedState(previousState);
+    s.observer = observer;
+    return s;
+  }
+
+  /**
+   * Gets the last action performed in the game, before this state was reached
+   * @return the last action performed prior to this state.
+   **/
+  public Action getPreviousAction(){return previousAction;}
+
+  /**
+   * Gets the last action performed in the game, by the specified player
+   * @return the last action performed by the given player, prior to this state.
+   * @throws ArrayIndexOUtOfBoundsException if the specified player has not yet performed an action
+   **/
+  public Action getPreviousAction(int player){
+    PackedState s = this;
+    while(s!=null && s.previousAction !=null && s.previousAction.getPlayer()!=player)
+      s = s.previousState;
+    if(s==null || s.previousAction==null) throw new ArrayIndexOutOfBoundsException("Player has not played yet");
+    else return s.previousAction;
+  }
+
+  /**
+   * Gets the card played in the previous move,
+   * or null if it is the first move,
+   * or the previous move was a hint.
+   * @return the card played in the previous action,
+   * or null if there is no previous action, or the action was a hint.
+   * */
+  public Card previousCardPlayed(){
+    try{
+      return previousState.getHand(previousAction.getPlayer())[previousAction.getCard()];
+    }
+    catch(Exception e){return null;}
+  }
+
+  /**
+   * Gets the discard pile as a stack
+   * @return a new stack of the discarded cards, with the most recent discard on top
+   **/
+  public Stack<Card> getDiscards(){
+    Stack<Card> d = new Stack<Card>();
+    for(byte c: discards) d.push(card(c));
+    return d;
+  }
+
+  /**
+   * Gets the number of cards of the given kind in the discard pile
+   * @param id the id of the card kind, as given by id(Card)
+   * @return the number of discarded cards of that kind
+   **/
+  public int discardCount(int id){return (int)(discardCounts>>>(id*DISCARD_BITS))&3;}
+
+  /**
+   * Get the stack of cards representing the specified firework
+   * @return a new stack of cards representing the firework of the given colour. The highest card is at the top of the stack.
+   **/
+  public Stack<Card> getFirework(Colour c){
+    Stack<Card> fw = new Stack<Card>();
+    for(int v = 0; v<fireworkHeight(c); v++) fw.push(Card.fromId(c.ordinal()*5+v));
+    return fw;
+  }
+
+  /**
+   * Gets the height of the specified firework
+   * @return the value of the highest card in the firework of the given colour, or 0 if it is empty
+   **/
+  public int fireworkHeight(Colour c){return fireworkHeight(c.ordinal());}
+
+  //the height of the firework with the given colour ordinal
+  private int fireworkHeight(int colour){return (int)(fireworks>>>(colour*FIREWORK_BITS))&7;}
+
+  /**
+   * Get the number of hint tokens available
+   * @return number of hints remaining
+   **/
+  public int getHintTokens(){return hints;}
+
+  /**
+   * Get the number of fuse tokens available
+   * @return number of fuse tokens remaining
+   **/
+  public int getFuseTokens(){return fuse;}
+
+  /**
+   * Gets the observer, or -1 if global state
+   * @return the agent index of the observer, or -1 if that state is Global
+   **/
+  public int getObserver(){return observer;}
+
+  /**
+   * Gets the nextplayer, or -1 if gameOver
+   * @return the agent index of the nextplayer, or -1 if the game is over.
+   **/
+  public int getNextPlayer(){return (gameOver()?-1:nextPlayer);}
+
+  /**
+   * Gets the order of the state, starting from 1.
+   * @return the order the state appears in the game, from first (1) to last.
+   **/
+  public int getOrder(){return order;}
+
+  /**
+   * Returns the order of the final action, if it is known.
+   * @return the order of the final action, or -1 if the deck is not empty
+   **/
+  public int getFinalActionIndex(){return finalAction;}
+
+  /**
+   * Get the current score
+   * @return the sum of the highest value cards in each firework
+   **/
+  public int getScore(){
+    if(fuse==0) return 0;
+    int score = 0;
+    for(int c = 0; c<5; c++) score += fireworkHeight(c);
+    return score;
+  }
+
+  /**
+   * Get the number of fireworks that have been completed
+   * @return the number of fireworks with all five cards played
+   **/
+  public int getCompletedFireworks(){
+    int n = 0;
+    for(int c = 0; c<5; c++) if(fireworkHeight(c)==5) n++;
+    return n;
+  }
+
+  /**
+   * Tests if the game is over
+   * @return true if all fireworks have been made, the deck has run out, or a fues has exploded.
+   **/
+  public boolean gameOver(){
+    return (order==finalAction || fuse == 0 || getScore()==25);
+  }
+
+  /**
+   * Gives a view of this state through the State API, so that it may be passed to agents.
+   * The view is backed by this object, and nextState and hideHand on the view return further views.
+   * @return a State with the same behaviour as this PackedState
+   **/
+  public State asState(){return new PackedStateView(this);}
+
+  /**
+   * Returns a string describing the state of the game, in the same format as State.toString()
+   * */
+  public String toString(){
+    StringBuilder ret = new StringBuilder("State: ").append(order).append('\n');
+    ret.append("Last move: ").append(previousAction).append('\n');
+    ret.append("Players' hands:\n");
+    for(int i = 0; i<players.length; i++){
+      ret.append(players[i]).append(" (").append(i).append("): ");
+      for(int j = 0; j<handSize; j++) ret.append(card(hands[i*handSize+j])).append(' ');
+      ret.append('\n');
+    }
+    ret.append("Fireworks:\n");
+    for(Colour c: Colour.values()){
+      int h = fireworkHeight(c);
+      ret.append(c).append("  ").append(h==0?"-":Card.fromId(c.ordinal()*5+h-1).toString()).append('\n');
+    }
+    ret.append("Hints: ").append(hints).append("\nFuse: ").append(fuse).append('\n');
+    return ret.toString();
+  }
+}
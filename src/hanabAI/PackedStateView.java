@@ -0,0 +1,100 @@
+package hanabAI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+/**
+ * An adapter presenting a PackedState through the State API.
+ * Every method is forwarded to the underlying PackedState, so none of the fields of State are used.
+ * Views are obtained from PackedState.asState().
+ **/
+class PackedStateView extends State{
+
+  /**The packed state being presented**/
+  private final PackedState packed;
+
+  /**
+   * Creates a view of the given packed state
+   * @param packed the packed state to present
+   **/
+  PackedStateView(PackedState packed){
+    this.packed = packed;
+  }
+
+  /**
+   * Gives the packed state behind this view
+   * @return the packed state
+   **/
+  PackedState getPackedState(){return packed;}
+
+  public State nextState(Action action, Stack<Card> deck) throws IllegalActionException{
+    return packed.nextState(action, deck).asState();
+  }
+
+  public State hideHand(int observer) throws IllegalActionException{
+    return packed.hideHand(observer).asState();
+  }
+
+  public boolean legalAction(Action a) throws IllegalActionException{return packed.legalAction(a);}
+
+  public int legalMoves(int[] moves){return packed.legalMoves(moves);}
+
+  public String[] getPlayers(){return packed.getPlayers();}
+
+  public Card[] getHand(int player) throws ArrayIndexOutOfBoundsException{return packed.getHand(player);}
+
+  public Card cardAt(int player, int slot) throws ArrayIndexOutOfBoundsException{return packed.cardAt(player, slot);}
+
+  /**
+   * The packed state holds card ids rather than cards, so the view is of a new array of the canonical cards.
+   **/
+  public List<Card> getHandView(int player) throws ArrayIndexOutOfBoundsException{
+    return Collections.unmodifiableList(Arrays.asList(packed.getHand(player)));
+  }
+
+  public String getName(int player){return packed.getName(player);}
+
+  public State getPreviousState(){
+    PackedState s = packed.getPreviousState();
+    return s==null?null:s.asState();
+  }
+
+  public Action getPreviousAction(){return packed.getPreviousAction();}
+
+  public Action getPreviousAction(int player){return packed.getPreviousAction(player);}
+
+  public Card previousCardPlayed(){return packed.previousCardPlayed();}
+
+  public Stack<Card> getDiscards(){return packed.getDiscards();}
+
+  public int discardCount(int cardKind){return packed.discardCount(cardKind);}
+
+  public Stack<Card> getFirework(Colour c){return packed.getFirework(c);}
+
+  public int fireworkHeight(Colour c){return packed.fireworkHeight(c);}
+
+  public int getHintTokens(){return packed.getHintTokens();}
+
+  public int getFuseTokens(){return packed.getFuseTokens();}
+
+  public int getObserver(){return packed.getObserver();}
+
+  public int getNextPlayer(){return packed.getNextPlayer();}
+
+  public int getOrder(){return packed.getOrder();}
+
+  public int getFinalActionIndex(){return packed.getFinalActionIndex();}
+
+  public int getScore(){return packed.getScore();}
+
+  public int getCompletedFireworks(){return packed.getCompletedFireworks();}
+
+  public boolean gameOver(){return packed.gameOver();}
+
+  /**
+   * Since the packed state is immutable, a clone is simply another view of it
+   **/
+  public Object clone(){return new PackedStateView(packed);}
+
+  public String toString(){return packed.toString();}
+}
@@ -0,0 +1,25 @@
+package hanabAI;
+
+/**
+ * An agent that can play one game after another, so that a game runner can keep agents and reuse them
+ * rather than creating new agents (and all the storage they allocate) for every game.
+ * When a game is played by Hanabi, startGame is called for every agent that implements this interface before the first action,
+ * and endGame after the last, even if the game ends with an exception.
+ * An agent must be reset by startGame whatever state the previous game left it in,
+ * and it should reuse the storage of the previous game where it can.
+ * An agent may only play in one game at a time.
+ **/
+public interface ReusableAgent extends Agent{
+
+  /**
+   * Called before the first action of a game, to forget any previous game.
+   * @param numPlayers the number of players in the game
+   * @param seat the index of this agent's seat in the game
+   **/
+  public void startGame(int numPlayers, int seat);
+
+  /**
+   * Called after the last action of a game, to let go of anything kept from the game.
+   **/
+  public void endGame();
+}
@@ -0,0 +1,341 @@
+package hanabAI;
+import java.util.Stack;
+/**
+ * A mutable simulator for the game Hanabi, intended for search.
+ * Where State.nextState creates a new state for every move,
+ * a Simulator changes its own position with apply(Action) and changes it back with undo().
+ * The information needed to undo each move is kept in a fixed-size stack of longs,
+ * so no objects are created as moves are applied and undone.
+ * The rules followed are exactly those of State.nextState.
+ **/
+public class Simulator{
+
+  /**The maximum number of moves that can be applied without being undone.
+   * Every hint uses a token, and every token comes from the start of the game, a discard or a completed firework,
+   * so no game can last anywhere near this many moves.**/
+  public static final int MAX_DEPTH = 128;
+
+  //layout of an undo record
+  private static final int SLOT_SHIFT = 0;//the slot played or discarded (8 bits, 255 for a hint)
+  private static final int REMOVED_SHIFT = 8;//the card that was in the slot (8 bits)
+  private static final int HINTS_SHIFT = 16;//the previous number of hint tokens (4 bits)
+  private static final int FUSE_SHIFT = 20;//the previous number of fuse tokens (4 bits)
+  private static final int FINAL_SHIFT = 24;//the previous final action index, plus one (16 bits)
+  private static final int FIREWORK_SHIFT = 40;//the colour of the firework that grew, plus one (4 bits)
+  private static final long DREW = 1L<<44;//set if a card was taken from the deck
+  private static final long DISCARDED = 1L<<45;//set if a card was added to the discard pile
+  private static final int NO_SLOT = 255;
+
+  /**The number of players**/
+  private final int numPlayers;
+  /**The number of cards in each hand**/
+  private final int handSize;
+  /**The card ids of each hand, stored player by player**/
+  private final byte[] hands;
+  /**The card ids of the deck, with the top of the deck at deckSize-1**/
+  private final byte[] deck = new byte[50];
+  /**The number of cards left in the deck**/
+  private int deckSize;
+  /**The ids of the discarded cards, in the order they were discarded**/
+  private final byte[] discards = new byte[50+MAX_DEPTH];
+  /**The number of cards in the discard pile**/
+  private int discardSize;
+  /**The number of each card kind in the discard pile, 2 bits per card id**/
+  private long discardCounts;
+  /**The height of each firework, 3 bits per colour**/
+  private long fireworks;
+  /**The sum of the firework heights**/
+  private int fireworkTotal;
+  private int hints;
+  private int fuse;
+  private int order;
+  private int finalAction;
+  private int nextPlayer;
+  /**The undo records of the moves applied so far**/
+  private final long[] undo = new long[MAX_DEPTH];
+  /**The number of moves that can be undone**/
+  private int depth;
+
+  /**
+   * Creates a simulator positioned at the given state.
+   * Cards hidden from the observer of the state are treated as empty slots, and may be filled with setCard.
+   * @param s the state to start from
+   * @param deck the cards remaining in the deck (not modified)
+   * @throws IllegalArgumentException if the deck is null
+   **/
+  public Simulator(State s, Stack<Card> deck) throws IllegalArgumentException{
+    if(deck==null) throw new IllegalArgumentException("incorrect parameters");
+    numPlayers = s.getPlayers().length;
+    handSize = s.getHand(0).length;
+    hands = new byte[numPlayers*handSize];
+    for(int p = 0; p<numPlayers; p++){
+      Card[] hand = s.getHand(p);
+      for(int j = 0; j<handSize; j++) hands[p*handSize+j] = PackedState.id(hand[j]);
+    }
+    deckSize = deck.size();
+    for(int i = 0; i<deckSize; i++) this.deck[i] = PackedState.id(deck.get(i));
+    Stack<Card> d = s.getDiscards();
+    for(Card c: d) addDiscard(PackedState.id(c));
+    for(Colour c: Colour.values()){
+      int h = s.getFirework(c).size();
+      fireworks |= ((long)h)<<(c.ordinal()*3);
+      fireworkTotal += h;
+    }
+    hints = s.getHintTokens();
+    fuse = s.getFuseTokens();
+    order = s.getOrder();
+    finalAction = s.getFinalActionIndex();
+    nextPlayer = order%numPlayers;
+  }
+
+  /**
+   * Applies an action, following the rules of State.nextState.
+   * @param action the action made
+   * @throws IllegalActionException if the action is not legal, the game is over, or the undo stack is full
+   **/
+  public void apply(Action action) throws IllegalActionException{
+    if(!legalAction(action)) throw new IllegalActionException("Invalid action!: "+action);
+    if(gameOver()) throw new IllegalActionException("Game Over!");
+    if(depth==MAX_DEPTH) throw new IllegalActionException("Too many moves to undo");
+    switch(action.getType()){
+      case PLAY: play(action.getCard()); break;
+      case DISCARD: discard(action.getCard()); break;
+      default: hint();
+    }
+  }
+
+  /**
+   * Applies the action with the given code (see Action.encode()), such as a move from legalMoves.
+   * No legality checks are made, and the caller must undo moves before MAX_DEPTH is reached.
+   * @param move the code of the action
+   * @throws ArrayIndexOutOfBoundsException if MAX_DEPTH moves have already been applied without being undone
+   * (unlike apply(Action), which throws an IllegalActionException)
+   **/
+  public void apply(int move) throws ArrayIndexOutOfBoundsException{
+    switch(Action.typeOf(move)){
+      case PLAY: play(Action.positionOf(move)); break;
+      case DISCARD: discard(Action.positionOf(move)); break;
+      default: hint();
+    }
+  }
+
+  /**
+   * Generates the legal moves of the player to move, in the same way as State.legalMoves.
+   * @param moves an array of at least Action.MAX_MOVES ints to hold the moves
+   * @return the number of moves generated, or 0 if the game is over
+   **/
+  public int legalMoves(int[] moves){
+    if(gameOver()) return 0;
+    return PackedState.legalMoves(moves, hands, handSize, numPlayers, nextPlayer, hints);
+  }
+
+  /**
+   * The player to move plays the card in the given slot.
+   * No legality checks are made, and the caller must undo moves before MAX_DEPTH is reached.
+   * @param slot the position of the card in the player's hand
+   **/
+  public void play(int slot){
+    int pos = nextPlayer*handSize+slot;
+    int c = hands[pos];
+    if(c==PackedState.EMPTY) throw new NullPointerException("No card at position "+slot);
+    long record = record(pos);
+    int colour = c/5;
+    int height = fireworkHeight(colour);
+    if(height==c%5){
+      fireworks += 1L<<(colour*3);
+      fireworkTotal++;
+      record |= ((long)colour+1)<<FIREWORK_SHIFT;
+      if(height==4 && hints<8) hints++;
+    }
+    else{
+      addDiscard(c);
+      record |= DISCARDED;
+      fuse--;
+    }
+    record |= draw(pos);
+    push(record);
+  }
+
+  /**
+   * The player to move discards the card in the given slot.
+   * No legality checks are made, and the caller must undo moves before MAX_DEPTH is reached.
+   * @param slot the position of the card in the player's hand
+   **/
+  public void discard(int slot){
+    int pos = nextPlayer*handSize+slot;
+    long record = record(pos)|DISCARDED;
+    addDiscard(hands[pos]);
+    record |= draw(pos);
+    if(hints<8) hints++;
+    push(record);
+  }
+
+  /**
+   * The player to move gives a hint. Since the simulator does not track what players know, only the token is used.
+   * No legality checks are made, and the caller must undo moves before MAX_DEPTH is reached.
+   **/
+  public void hint(){
+    long record = record(-1);
+    hints--;
+    push(record);
+  }
+
+  /**
+   * Reverts the last move that was applied.
+   * @throws IllegalStateException if there is no move to undo
+   **/
+  public void undo(){
+    if(depth==0) throw new IllegalStateException("No move to undo");
+    long record = undo[--depth];
+    order--;
+    nextPlayer = (nextPlayer+numPlayers-1)%numPlayers;
+    hints = (int)(record>>>HINTS_SHIFT)&15;
+    fuse = (int)(record>>>FUSE_SHIFT)&15;
+    finalAction = ((int)(record>>>FINAL_SHIFT)&0xFFFF)-1;
+    int slot = (int)(record>>>SLOT_SHIFT)&255;
+    if(slot==NO_SLOT) return;
+    hands[slot] = (byte)(record>>>REMOVED_SHIFT);
+    if((record&DREW)!=0) deckSize++;
+    if((record&DISCARDED)!=0){
+      int c = discards[--discardSize];
+      if(c!=PackedState.EMPTY) discardCounts -= 1L<<(c*2);
+    }
+    int colour = ((int)(record>>>FIREWORK_SHIFT)&15)-1;
+    if(colour>=0){
+      fireworks -= 1L<<(colour*3);
+      fireworkTotal--;
+    }
+  }
+
+  //the common part of an undo record: the slot, the card in it and the counters before the move
+  private long record(int pos){
+    return ((long)(pos<0?NO_SLOT:pos))<<SLOT_SHIFT
+      | (pos<0?0L:(hands[pos]&0xFFL))<<REMOVED_SHIFT
+      | ((long)hints)<<HINTS_SHIFT
+      | ((long)fuse)<<FUSE_SHIFT
+      | ((long)finalAction+1)<<FINAL_SHIFT;
+  }
+
+  //replaces the card at the given position from the deck, as State.nextState does, returning DREW if a card was taken
+  private long draw(int pos){
+    long drew = 0;
+    if(deckSize>0){
+      hands[pos] = deck[--deckSize];
+      drew = DREW;
+    }
+    if(deckSize==0){
+      if(finalAction==-1) finalAction = order+numPlayers;
+      hands[pos] = PackedState.EMPTY;
+    }
+    return drew;
+  }
+
+  //stores an undo record and moves on to the next player
+  private void push(long record){
+    undo[depth++] = record;
+    order++;
+    nextPlayer = (nextPlayer+1)%numPlayers;
+  }
+
+  //adds a card to the discard pile
+  private void addDiscard(int c){
+    discards[discardSize++] = (byte)c;
+    if(c!=PackedState.EMPTY) discardCounts += 1L<<(c*2);
+  }
+
+  /**
+   * Test the legality of an action, following the same rules as State.legalAction for a global state.
+   * @param a the move to be tested
+   * @return true if the move is legal in the current position.
+   * @throws IllegalActionException if a discard is attempted with 8 hint tokens
+   **/
+  public boolean legalAction(Action a) throws IllegalActionException{
+    if(a.getPlayer()!=nextPlayer) return false;
+    switch(a.getType()){
+      case PLAY:
+        return (a.getCard()>=0 && a.getCard()<handSize);
+      case DISCARD:
+        if(hints==8) throw new IllegalActionException("Discards cannot be made when there are 8 hint tokens");
+        return (a.getCard()>=0 && a.getCard()<handSize);
+      case HINT_COLOUR:
+      case HINT_VALUE:
+        int r = a.getHintReceiver();
+        if(hints==0 || r<0 || r>numPlayers || r == a.getPlayer()) return false;
+        if(r==numPlayers) throw new ArrayIndexOutOfBoundsException(r);
+        return a.getHintSize()==handSize && a.getHintMask()==PackedState.hintMask(hands, r*handSize, handSize, a);
+      default: return false;
+    }
+  }
+
+  /**
+   * Puts a card into a hand, for example to fill in a hand that was hidden from the observer.
+   * @param player the index of the player
+   * @param slot the position in the player's hand
+   * @param id the id of the card, as given by PackedState.id(Card)
+   **/
+  public void setCard(int player, int slot, int id){hands[player*handSize+slot] = (byte)id;}
+
+  /**
+   * Replaces the cards remaining in the deck, for example with a sample of the cards the observer cannot see.
+   * This should only be done when no moves have been applied, since undo does not restore the deck.
+   * @param ids the card ids (see Card.getId()), with the top of the deck last
+   * @param from the position in ids of the bottom card of the deck
+   * @param size the number of cards in the deck
+   * @throws IllegalArgumentException if there are more than 50 cards
+   **/
+  public void setDeck(byte[] ids, int from, int size) throws IllegalArgumentException{
+    if(size<0 || size>deck.length) throw new IllegalArgumentException("incorrect parameters");
+    System.arraycopy(ids, from, deck, 0, size);
+    deckSize = size;
+  }
+
+  /**
+   * Gives the id of the card in the specified slot of a player's hand.
+   * @return the id of the card, or PackedState.EMPTY if there is no card
+   **/
+  public int cardId(int player, int slot){return hands[player*handSize+slot];}
+
+  /**@return the number of players**/
+  public int getNumPlayers(){return numPlayers;}
+
+  /**@return the number of cards in each hand**/
+  public int getHandSize(){return handSize;}
+
+  /**@return the number of cards left in the deck**/
+  public int getDeckSize(){return deckSize;}
+
+  /**@return the height of the firework of the given colour**/
+  public int fireworkHeight(Colour c){return fireworkHeight(c.ordinal());}
+
+  private int fireworkHeight(int colour){return (int)(fireworks>>>(colour*3))&7;}
+
+  /**@return the number of cards with the given id in the discard pile**/
+  public int discardCount(int id){return (int)(discardCounts>>>(id*2))&3;}
+
+  /**@return the number of cards in the discard pile**/
+  public int getDiscardSize(){return discardSize;}
+
+  /**@return the number of hint tokens available**/
+  public int getHintTokens(){return hints;}
+
+  /**@return the number of fuse tokens available**/
+  public int getFuseTokens(){return fuse;}
+
+  /**@return the order of the current position in the game**/
+  public int getOrder(){return order;}
+
+  /**@return the order of the final action, or -1 if the deck is not empty**/
+  public int getFinalActionIndex(){return finalAction;}
+
+  /**@return the index of the next player, or -1 if the game is over**/
+  public int getNextPlayer(){return gameOver()?-1:nextPlayer;}
+
+  /**@return the number of moves that can be undone**/
+  public int getDepth(){return depth;}
+
+  /**@return the sum of the highest value cards in each firework, or 0 if the fuse has burnt out**/
+  public int getScore(){return fuse==0?0:fireworkTotal;}
+
+  /**@return true if all fireworks have been made, the deck has run out, or a fuse has exploded**/
+  public boolean gameOver(){return order==finalAction || fuse==0 || fireworkTotal==25;}
+}
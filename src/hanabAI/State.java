@@ -5,6 +5,9 @@ import java.util.*;
  * The state is designed as an immutable object.
  * Agents are able to get the current game state, 
  * and all previous moves using a state object.
+ * Since no method changes a state once it has been created
+ * (previous states and local views are always new objects, and the game log is only appended to),
+ * states may be shared freely between threads, for example by the workers of a parallel search.
  * @author Tim French
  **/
 
@@ -15,10 +18,18 @@ public class State implements Cloneable{
   private String[] players;
   /**The stack of cards that have bee discarded, or incorrectly played**/
   private Stack<Card> discards;
+  /**The number of each kind of card in the discard pile**/
+  private CardMultiset discardCounts;
   /**For each colour, the cards making up that firework so far**/
   private Map<Colour,Stack<Card>> fireworks;
   /**The hand of each player**/
   private Card[][] hands;
+  /**Unmodifiable views of the hands, created when first requested.
+   * Threads racing to create a view may each create their own, which is harmless since the views are equivalent**/
+  private List<Card>[] handViews;
+  /**For each player, bitmasks of the cards in their hand of each colour (5 bits per colour, by ordinal),
+   * each value (5 bits per value, from bit 25) and the empty slots (from bit 50), so that hints can be checked with one comparison**/
+  private long[] hintMasks;
   /**The order of this state in the game**/
   private int order=0;
   /**The number of hints remaining**/
@@ -27,14 +38,20 @@ public class State implements Cloneable{
   private int fuse=0;
   /**The observer of this state. This allows hidden information to be redacted**/
   private int observer=-1;
-  /**The previous State of the game, so that all states are accessible back to the first state (with a null previous state)**/
-  private State previousState;
-  /**A list of all moves made so far in the game, in the order they were played**/
+  /**The log of the moves made so far in the game, shared with the other states of the game, from which all previous states can be rebuilt**/
+  private GameLog log;
+  /**The last move made in the game, before this state was reached**/
   private Action previousAction;
   /**The index of the next player to move**/
   private int nextPlayer=-1;
   /**The fnal play of the game (for when the deck runs out)**/
   private int finalAction=-1;
+  /**The sum of the values of the top cards of the fireworks, kept up to date by nextState**/
+  private int fireworkTotal=0;
+  /**The number of fireworks that have been completed, kept up to date by nextState**/
+  private int completedFireworks=0;
+  /**Whether the game is over, set by nextState**/
+  private boolean over=false;
 
   /**A constructor for the first state in the game
    * @param players the names of the players in the game, in an array by index
@@ -45,20 +62,27 @@ public class State implements Cloneable{
       throw new IllegalArgumentException("incorrect parameters");
     this.players = players.clone();
     discards = new Stack<Card>();
+    discardCounts = new CardMultiset();
     fireworks = new HashMap<Colour,Stack<Card>>();
     for(Colour c: Colour.values())fireworks.put(c,new Stack<Card>());
     hands = new Card[players.length][players.length>3?4:5];
     for(int i = 0; i<hands.length; i++)
       for(int j = 0; j<hands[i].length; j++) 
         hands[i][j]=deck.pop();
+    hintMasks = new long[players.length];
+    for(int i = 0; i<hands.length; i++) hintMasks[i] = hintMasks(hands[i]);
     order = 0;
     hints = 8;
     fuse = 3;
     observer = -1;  
     nextPlayer = 0;
     finalAction = -1;
+    log = new GameLog();
   }
 
+  /**A constructor for subclasses that provide their own representation of the game, such as the view given by PackedState.asState()**/
+  State(){}
+
   /**
    *A method to create the next state from the given state and a move.
    *This method will only work if no hand has been hidden (since it allows agents to infer the result of actions).
@@ -71,33 +95,35 @@ public class State implements Cloneable{
    if(gameOver()) throw new IllegalActionException("Game Over!");
    if(observer!=-1) throw new IllegalActionException("Next state unavailable!");
    State s = (State)this.clone();
+   int effect = GameLog.NONE;
    switch(action.getType()){
      case PLAY:
        Card c = hands[action.getPlayer()][action.getCard()];
+       int flags = 0;
        Stack<Card> fw = fireworks.get(c.getColour());
        if((fw.isEmpty() && c.getValue() == 1) || (!fw.isEmpty() && fw.peek().getValue()==c.getValue()-1)){
          s.fireworks.get(c.getColour()).push(c);
-         if(s.fireworks.get(c.getColour()).size()==5 && s.hints<8) s.hints++;
+         s.fireworkTotal++;
+         flags |= GameLog.BUILT;
+         if(s.fireworks.get(c.getColour()).size()==5){
+           s.completedFireworks++;
+           if(s.hints<8){s.hints++; flags |= GameLog.HINT_GAINED;}
+         }
        }
        else{
          s.discards.push(c);
+         s.discardCounts.add(c);
          s.fuse--;
        }
-       if(!deck.isEmpty()) s.hands[action.getPlayer()][action.getCard()] = deck.pop();
-       if(deck.isEmpty()){
-        if(finalAction==-1) s.finalAction = order+players.length;
-        s.hands[action.getPlayer()][action.getCard()] = null;
-       }
+       effect = s.draw(action.getPlayer(), action.getCard(), deck, c, flags);
        break;  
      case DISCARD:
        c = hands[action.getPlayer()][action.getCard()];
        s.discards.push(c);
-       if(!deck.isEmpty()) s.hands[action.getPlayer()][action.getCard()] = deck.pop();
-       if(deck.isEmpty()){
-        if(finalAction==-1) s.finalAction = order+players.length;
-        s.hands[action.getPlayer()][action.getCard()] = null;
-       }
-       if(hints<8) s.hints++;
+       if(c!=null) s.discardCounts.add(c);
+       flags = 0;
+       if(hints<8){s.hints++; flags |= GameLog.HINT_GAINED;}
+       effect = s.draw(action.getPlayer(), action.getCard(), deck, c, flags);
        break;
      case HINT_COLOUR: 
        s.hints--; 
@@ -107,27 +133,52 @@ public class State implements Cloneable{
        break;
      default: break;
    }
+   if(action.getType()==ActionType.PLAY || action.getType()==ActionType.DISCARD)
+     s.hintMasks[action.getPlayer()] = hintMasks(s.hands[action.getPlayer()]);
    s.order++;
    s.previousAction = action;
    s.nextPlayer = (nextPlayer+1)%players.length; 
-   s.previousState = this;  
+   s.log = log.append(order, action.encode(), effect);
+   s.over = (s.order==s.finalAction || s.fuse == 0 || s.getScore()==25);
    return s;
   }
 
+  //replaces the card played or discarded from a slot with the next card in the deck, and gives the effect to be logged
+  private int draw(int player, int slot, Stack<Card> deck, Card removed, int flags){
+    Card drawn = null;
+    if(!deck.isEmpty()) hands[player][slot] = drawn = deck.pop();
+    if(deck.isEmpty()){
+      if(finalAction==-1){finalAction = order+players.length; flags |= GameLog.LAST_DRAW;}
+      hands[player][slot] = null;
+    }
+    return GameLog.effect(removed, drawn, flags);
+  }
+
   /**
    *A method to create a local state from a global state. 
    *That is, if there is no current observer, the specified observer will have their hand hidden from them.
+   *The local state is a view that shares the hands, discards and fireworks of the global state, rather than a copy of them:
+   *this is safe because a state is never changed once it has been created,
+   *and the observer's hand is redacted whenever it is read.
    *@param observer the player observing the game state
    *@throws IllegalActionException if the observer is out of bounds, or if the state is not global.
    **/
   public State hideHand(int observer) throws IllegalActionException{
     if(this.observer==-1 && observer>=0 && observer < hands.length){
-      State local = (State) this.clone();
+      State local = view();
       local.observer=observer;
       return local;
     }
     else throw new IllegalActionException("Hand already hidden, or observer out of bounds");
   }
+
+  //a shallow copy of this state, sharing all of its data
+  private State view(){
+    try{
+      return (State) super.clone();
+    }
+    catch(CloneNotSupportedException e){return null;}
+  }
   
   /**
    * Test the legality of a Action.
@@ -147,24 +198,95 @@ public class State implements Cloneable{
         return (a.getCard()>=0 && a.getCard()<hands[nextPlayer].length);
       case HINT_COLOUR:
         if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>players.length || a.getHintReceiver() == a.getPlayer()) return false; 
-        boolean[] hint = new boolean[hands[a.getHintReceiver()].length];
-        for(int i = 0; i<hint.length; i++){
-          Card c = hands[a.getHintReceiver()][i];
-          hint[i] = (c==null?null:c.getColour())==a.getColour();
-        }
-        return Arrays.equals(hint, a.getHintedCards());
+        return a.getHintSize()==hands[a.getHintReceiver()].length && a.getHintMask()==colourMask(hintMasks[a.getHintReceiver()], a.getColour());
       case HINT_VALUE:
         if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>players.length || a.getHintReceiver() == a.getPlayer()) return false; 
-        hint = new boolean[hands[a.getHintReceiver()].length];
-        for(int i = 0; i<hint.length; i++){
-          Card c = hands[a.getHintReceiver()][i];
-          hint[i] = (c==null?-1:c.getValue())==a.getValue();
-        }
-        return Arrays.equals(hint, a.getHintedCards());
+        return a.getHintSize()==hands[a.getHintReceiver()].length && a.getHintMask()==valueMask(hintMasks[a.getHintReceiver()], a.getValue());
       default: return false;
     }
   }
   
+  /**
+   * Generates the legal moves of the next player, as int codes (see Action.encode()).
+   * Plays and discards of empty slots, and hints that refer to no cards, are not generated,
+   * although legalAction accepts them.
+   * @param moves an array of at least Action.MAX_MOVES ints to hold the moves
+   * @return the number of moves generated, or 0 if the game is over
+   **/
+  public int legalMoves(int[] moves){
+    if(gameOver()) return 0;
+    int n = 0;
+    int p = nextPlayer;
+    for(int i = 0; i<hands[p].length; i++) if(hands[p][i]!=null) moves[n++] = Action.encodePlay(p,i);
+    if(hints<8)
+      for(int i = 0; i<hands[p].length; i++) if(hands[p][i]!=null) moves[n++] = Action.encodeDiscard(p,i);
+    if(hints>0)
+      for(int i = 1; i<players.length; i++){
+        int r = (p+i)%players.length;
+        n = hintMoves(moves, n, p, r, hintMasks[r], hands[r].length);
+      }
+    return n;
+  }
+
+  /**
+   * Adds every hint from one player to another that refers to at least one card.
+   * @param moves the array the codes of the hints are added to
+   * @param n the number of moves already in the array
+   * @param player the player giving the hints
+   * @param hintReceiver the player receiving the hints
+   * @param masks the hint masks of the receiver's hand
+   * @param handSize the number of cards in the receiver's hand
+   * @return the number of moves in the array
+   **/
+  static int hintMoves(int[] moves, int n, int player, int hintReceiver, long masks, int handSize){
+    for(int c = 0; c<5; c++){
+      int mask = (int)(masks>>>(c*5))&31;
+      if(mask!=0) moves[n++] = Action.encodeHint(ActionType.HINT_COLOUR, player, hintReceiver, c, mask, handSize);
+    }
+    for(int v = 1; v<=5; v++){
+      int mask = (int)(masks>>>(25+(v-1)*5))&31;
+      if(mask!=0) moves[n++] = Action.encodeHint(ActionType.HINT_VALUE, player, hintReceiver, v, mask, handSize);
+    }
+    return n;
+  }
+
+  /**
+   * Computes the hint masks for a hand.
+   * @param hand the cards in the hand, with null for an empty slot
+   * @return the colour masks (5 bits per colour), then the value masks (5 bits per value, from bit 25), then the empty slots (from bit 50)
+   **/
+  static long hintMasks(Card[] hand){
+    long masks = 0;
+    for(int i = 0; i<hand.length; i++){
+      Card c = hand[i];
+      if(c==null) masks |= 1L<<(50+i);
+      else masks |= (1L<<(c.getColour().ordinal()*5+i)) | (1L<<(25+(c.getValue()-1)*5+i));
+    }
+    return masks;
+  }
+
+  /**
+   * Gives the cards a colour hint refers to, from the hint masks of a hand
+   * @param masks the hint masks of the hand
+   * @param c the colour hinted, where null refers to the empty slots
+   * @return the bitmask of the matching cards
+   **/
+  static int colourMask(long masks, Colour c){
+    return (int)(masks>>>(c==null?50:c.ordinal()*5))&31;
+  }
+
+  /**
+   * Gives the cards a value hint refers to, from the hint masks of a hand
+   * @param masks the hint masks of the hand
+   * @param v the value hinted, where -1 refers to the empty slots
+   * @return the bitmask of the matching cards
+   **/
+  static int valueMask(long masks, int v){
+    if(v==-1) return (int)(masks>>>50)&31;
+    if(v<1 || v>5) return 0;
+    return (int)(masks>>>(25+(v-1)*5))&31;
+  }
+
   /**
    * Gives and array of all the player names in the game.
    * @return an array containing the naems of the players in the game, by ther index in the game.
@@ -185,6 +307,35 @@ public class State implements Cloneable{
     return hands[player].clone();
   }
 
+  /**
+   * Gives the card in one position of a player's hand, without copying the hand.
+   * @param player the index of the player in the game
+   * @param slot the position of the card in the player's hand
+   * @return the card, or null if the slot is empty or the card is hidden from the observer.
+   * @throws ArrayIndexOutOfBounds if there is no such player or position.
+   **/
+  public Card cardAt(int player, int slot) throws ArrayIndexOutOfBoundsException{
+    if(player<0 || player>=players.length) throw new ArrayIndexOutOfBoundsException();
+    Card c = hands[player][slot];
+    return (player==observer?null:c);
+  }
+
+  /**
+   * Gives a read-only view of the cards of the specified player, without copying the hand.
+   * @param player the index of the player is the game
+   * @return an unmodifiable list of the cards in player's hand, which are all null if the cards are hidden.
+   * @throws ArrayIndexOutOfBounds if there is no player of the given index.
+   **/
+  @SuppressWarnings({"unchecked","rawtypes"})
+  public List<Card> getHandView(int player) throws ArrayIndexOutOfBoundsException{
+    if(player<0 || player>=players.length) throw new ArrayIndexOutOfBoundsException();
+    if(player==observer) return Collections.nCopies(hands[player].length, null);
+    List<Card>[] views = handViews;
+    if(views==null) handViews = views = new List[players.length];
+    if(views[player]==null) views[player] = Collections.unmodifiableList(Arrays.asList(hands[player]));
+    return views[player];
+  }
+
   /**
    * Gives a players name
    * @return the name of the specified player
@@ -193,11 +344,52 @@ public class State implements Cloneable{
 
   /**
    * Gives the previous state of the game, allowing agents to determine the recent actions in the game.
-   * @return the previous state, with the same observer as the current state.
+   * The previous state is rebuilt from the game log by undoing the last move,
+   * and shares all the parts of this state that the move did not change.
+   * @return the previous state, with the same observer as the current state, or null if this is the first state.
    **/
+  @SuppressWarnings("unchecked")
   public State getPreviousState(){
-    State s = previousState;
-    s.observer = observer;
+    if(order==0) return null;
+    State s = view();
+    s.handViews = null;
+    s.order = order-1;
+    s.over = false;
+    s.nextPlayer = (nextPlayer+players.length-1)%players.length;
+    int code = log.action(s.order), effect = log.effect(s.order);
+    s.previousAction = s.order==0?null:Action.decode(log.action(s.order-1), this);
+    switch(Action.typeOf(code)){
+      case PLAY: case DISCARD:
+        int player = Action.playerOf(code), slot = Action.positionOf(code);
+        Card c = log.removed(s.order);
+        s.hands = hands.clone();
+        s.hands[player] = hands[player].clone();
+        s.hands[player][slot] = c;
+        s.hintMasks = hintMasks.clone();
+        s.hintMasks[player] = hintMasks(s.hands[player]);
+        if((effect&GameLog.BUILT)!=0){
+          s.fireworks = (Map<Colour,Stack<Card>>)((HashMap)fireworks).clone();
+          Stack<Card> fw = (Stack<Card>)fireworks.get(c.getColour()).clone();
+          if(fw.size()==5) s.completedFireworks--;
+          fw.pop();
+          s.fireworks.put(c.getColour(), fw);
+          s.fireworkTotal--;
+        }
+        else{
+          s.discards = (Stack<Card>)discards.clone();
+          s.discards.pop();
+          if(c!=null){
+            s.discardCounts = discardCounts.clone();
+            s.discardCounts.remove(c);
+          }
+          if(Action.typeOf(code)==ActionType.PLAY) s.fuse++;
+        }
+        if((effect&GameLog.HINT_GAINED)!=0) s.hints--;
+        if((effect&GameLog.LAST_DRAW)!=0) s.finalAction = -1;
+        break;
+      default:
+        s.hints++;
+    }
     return s;
   }
 
@@ -214,11 +406,10 @@ public class State implements Cloneable{
    * @throws ArrayIndexOUtOfBoundsException if the specified player has not yet performed an action
    **/
   public Action getPreviousAction(int player){
-    State s = this;
-    while(s!=null && s.previousAction !=null && s.previousAction.getPlayer()!=player)
-      s = s.previousState;
-    if(s==null || s.previousAction==null) throw new ArrayIndexOutOfBoundsException("Player has not played yet");
-    else return s.previousAction;
+    //the player who moved in the state of order j is player j%players.length
+    int j = player<0 || player>=players.length?-1:order-1-Math.floorMod(order-1-player, players.length);
+    if(j<0) throw new ArrayIndexOutOfBoundsException("Player has not played yet");
+    return j==order-1?previousAction:Action.decode(log.action(j), this);
   }
 
   /**
@@ -229,10 +420,7 @@ public class State implements Cloneable{
    * or null if there is no previous action, or the action was a hint.
    * */
   public Card previousCardPlayed(){
-    try{
-      return previousState.getHand(previousAction.getPlayer())[previousAction.getCard()];
-    }
-    catch(Exception e){return null;}
+    return order==0?null:log.removed(order-1);
   }
 
 
@@ -242,12 +430,25 @@ public class State implements Cloneable{
    **/
   public Stack<Card> getDiscards(){return (Stack<Card>) discards.clone();}
 
+  /**
+   * Gets the number of cards of one kind in the discard pile, without copying the pile
+   * @param cardKind the id of the kind of card (see Card.getId())
+   * @return the number of cards of that kind that have been discarded, or incorrectly played
+   **/
+  public int discardCount(int cardKind){return discardCounts.count(cardKind);}
+
   /**
    * Get the stack of cards representing the specified firework
    * @return a clone of the stack of cards representing the firework of the given colour. The highest card is at the top of the stack.
    **/
   public Stack<Card> getFirework(Colour c){return (Stack<Card>) fireworks.get(c).clone();}
 
+  /**
+   * Get the height of the specified firework, without copying it
+   * @return the number of cards in the firework of the given colour, which is also the value of its top card
+   **/
+  public int fireworkHeight(Colour c){return fireworks.get(c).size();}
+
   /**
    * Get the number of hint tokens available
    * @return number of hints remaining
@@ -293,22 +494,24 @@ public class State implements Cloneable{
 
   /**
    * Get the current score
-   * @return the sum of the highest value cards in each firework
+   * @return the sum of the highest value cards in each firework, or 0 if the fuse has burnt out
    **/
   public int getScore(){
-    int score = 0;
-    if(fuse==0) return 0;
-    for(Colour c: Colour.values()) 
-      if(!fireworks.get(c).isEmpty())score+=fireworks.get(c).peek().getValue();
-    return score;
+    return (fuse==0?0:fireworkTotal);
   }
 
+  /**
+   * Get the number of fireworks that have been completed
+   * @return the number of fireworks with all five cards played
+   **/
+  public int getCompletedFireworks(){return completedFireworks;}
+
   /**
    * Tests if the game is over
    * @return true if all fireworks have been made, the deck has run out, or a fues has exploded.
    **/
   public boolean gameOver(){
-    return (order==finalAction || fuse == 0 || getScore()==25);
+    return over;
   }
 
   /**
@@ -319,8 +522,11 @@ public class State implements Cloneable{
       State s = (State) super.clone();
       s.players = players.clone();
       s.discards = (Stack<Card>)discards.clone();
+      s.discardCounts = discardCounts.clone();
+      s.handViews = null;
       s.hands = (Card[][]) hands.clone();
       for(int i = 0; i<hands.length; i++) s.hands[i] = (Card[])s.hands[i].clone();
+      s.hintMasks = hintMasks.clone();
       s.fireworks = (Map<Colour,Stack<Card>>)((HashMap)fireworks).clone();
       for(Colour c: Colour.values()) s.fireworks.put(c,(Stack<Card>)fireworks.get(c).clone());
       return s;
@@ -335,19 +541,20 @@ public class State implements Cloneable{
    * and the last action.
    * */
   public String toString(){
-    String ret = "State: "+order+"\n";
-    ret+="Last move: "+previousAction+"\n";
-    ret+="Players' hands:\n";
+    StringBuilder ret = new StringBuilder(256);
+    ret.append("State: ").append(order).append("\n");
+    ret.append("Last move: ").append(previousAction).append("\n");
+    ret.append("Players' hands:\n");
     for(int i = 0; i<players.length; i++){
-      ret+=players[i]+" ("+i+"): ";
-      for(Card c: hands[i])ret+=c+" ";
-      ret+="\n";
+      ret.append(players[i]).append(" (").append(i).append("): ");
+      for(Card c: hands[i])ret.append(c).append(" ");
+      ret.append("\n");
     }
-    ret+="Fireworks:\n";
+    ret.append("Fireworks:\n");
     for(Colour c: Colour.values())
-      ret+=c+"  "+(fireworks.get(c).isEmpty()? "-" : fireworks.get(c).peek()) +"\n";
-    ret+= "Hints: "+hints+"\nFuse: "+fuse+"\n";
-    return ret;
+      ret.append(c).append("  ").append(fireworks.get(c).isEmpty()? "-" : fireworks.get(c).peek()).append("\n");
+    ret.append("Hints: ").append(hints).append("\nFuse: ").append(fuse).append("\n");
+    return ret.toString();
   }
 
 }
@@ -0,0 +1,129 @@
+package hanabAI;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A sink that writes games as compact lines of ASCII text, one line per record:
+ * <ul>
+ * <li><code>game id name...</code> starts a game (spaces in names are written as underscores);</li>
+ * <li><code>deal hand...</code> gives the hand of each player, with each card as its colour's initial and value (B1 R2 G3 W4 Y5), and -- for an empty slot;</li>
+ * <li><code>order player P slot card drawn hints fuse score</code> records a play, where order is the order of the state reached and drawn is the card now in the slot;</li>
+ * <li><code>order player D slot card drawn hints fuse score</code> records a discard;</li>
+ * <li><code>order player C receiver colour slots hints fuse score</code> and <code>order player V receiver value slots hints fuse score</code> record hints,
+ * where slots lists the positions hinted (or - if there are none), and an empty slot hint is written as ?;</li>
+ * <li><code>end score order</code> ends the game.</li>
+ * </ul>
+ * The records are written straight into byte buffers, so logging a game creates no strings.
+ **/
+public class TextRecordWriter extends GameRecordWriter{
+
+  /**The largest size of an action record**/
+  private static final int ACTION_SIZE = 64;
+
+  /**
+   * Creates a writer.
+   * @param channel the channel to write the records to, which is closed when the writer is closed
+   **/
+  public TextRecordWriter(WritableByteChannel channel){
+    super(channel);
+  }
+
+  protected void writeStart(long gameId, State first){
+    String[] players = first.getPlayers();
+    int size = 32;
+    for(String p: players) size += p.length()+1;
+    ByteBuffer b = buffer(size);
+    b.put((byte)'g').put((byte)'a').put((byte)'m').put((byte)'e');
+    number(b.put((byte)' '), gameId);
+    for(String p: players){
+      b.put((byte)' ');
+      for(int i = 0; i<p.length(); i++){
+        char c = p.charAt(i);
+        b.put((byte)(c==' '?'_':(c<33 || c>126?'?':c)));
+      }
+    }
+    b.put((byte)'\n');
+    int handSize = first.getHandView(0).size();
+    b = buffer(8+players.length*(2*handSize+1));
+    b.put((byte)'d').put((byte)'e').put((byte)'a').put((byte)'l');
+    for(int p = 0; p<players.length; p++){
+      b.put((byte)' ');
+      for(int i = 0; i<handSize; i++) card(b, first.cardAt(p, i));
+    }
+    b.put((byte)'\n');
+  }
+
+  protected void writeAction(Action action, State next){
+    ByteBuffer b = buffer(ACTION_SIZE);
+    number(b, next.getOrder());
+    number(b.put((byte)' '), action.getPlayer());
+    b.put((byte)' ');
+    try{
+      switch(action.getType()){
+        case PLAY: case DISCARD:
+          b.put((byte)(action.getType()==ActionType.PLAY?'P':'D')).put((byte)' ');
+          number(b, action.getCard()).put((byte)' ');
+          card(b, next.previousCardPlayed());
+          b.put((byte)' ');
+          card(b, next.cardAt(action.getPlayer(), action.getCard()));
+          break;
+        case HINT_COLOUR:
+          b.put((byte)'C').put((byte)' ');
+          number(b, action.getHintReceiver()).put((byte)' ');
+          b.put((byte)(action.getColour()==null?'?':action.getColour().toString().charAt(0)));
+          slots(b.put((byte)' '), action.getHintMask());
+          break;
+        case HINT_VALUE:
+          b.put((byte)'V').put((byte)' ');
+          number(b, action.getHintReceiver()).put((byte)' ');
+          if(action.getValue()==-1) b.put((byte)'?');
+          else number(b, action.getValue());
+          slots(b.put((byte)' '), action.getHintMask());
+          break;
+        default: break;
+      }
+    }
+    catch(IllegalActionException e){}//the accessors match the type of the action
+    number(b.put((byte)' '), next.getHintTokens());
+    number(b.put((byte)' '), next.getFuseTokens());
+    number(b.put((byte)' '), next.getScore());
+    b.put((byte)'\n');
+  }
+
+  protected void writeEnd(State last, int score){
+    ByteBuffer b = buffer(24);
+    b.put((byte)'e').put((byte)'n').put((byte)'d').put((byte)' ');
+    number(b, score);
+    number(b.put((byte)' '), last.getOrder());
+    b.put((byte)'\n');
+  }
+
+  //writes a number in decimal
+  private static ByteBuffer number(ByteBuffer b, long n){
+    if(n<0){
+      b.put((byte)'-');
+      if(n==Long.MIN_VALUE){
+        for(int i = 1; i<20; i++) b.put((byte)"-9223372036854775808".charAt(i));
+        return b;
+      }
+      n = -n;
+    }
+    long d = 1;
+    while(d<=n/10) d *= 10;
+    for(; d>0; d /= 10) b.put((byte)('0'+(n/d)%10));
+    return b;
+  }
+
+  //writes a card as its colour's initial and value, or -- for no card
+  private static void card(ByteBuffer b, Card c){
+    if(c==null) b.put((byte)'-').put((byte)'-');
+    else b.put((byte)c.getColour().toString().charAt(0)).put((byte)('0'+c.getValue()));
+  }
+
+  //writes the positions in a hint mask, or - if there are none
+  private static void slots(ByteBuffer b, int mask){
+    if(mask==0) b.put((byte)'-');
+    for(int i = 0; i<5; i++) if((mask&(1<<i))!=0) b.put((byte)('0'+i));
+  }
+}
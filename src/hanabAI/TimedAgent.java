@@ -0,0 +1,23 @@
+package hanabAI;
+
+/**
+ * An agent that is told how long it has to decide on each action, such as a search agent that can stop at any time.
+ * The agent should check the deadline as it works, and return the best action it has found before the deadline passes.
+ * The game runner does not interrupt an agent, but if the action is returned late it may be replaced by that of a default agent
+ * (see Hanabi.setDeadline).
+ * */
+public interface TimedAgent extends Agent{
+  /**
+   * Given the state and the time allowed, return the action that the strategy chooses for this state.
+   * @param s the state of the game, from the point of view of the agent
+   * @param deadline the time by which the action must be returned
+   * @return the action the agent chooses to perform
+   * */
+  public Action doAction(State s, Deadline deadline);
+
+  /**
+   * Chooses an action with no time limit.
+   * @return the action the agent chooses to perform
+   * */
+  public default Action doAction(State s){return doAction(s, Deadline.NONE);}
+}
@@ -0,0 +1,334 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A class for running many games of Hanabi in parallel.
+ * Each game is given its own seed, derived from the seed of the tournament and the number of the game.
+ * The seed determines the number of players, which agents take part, and the deal,
+ * so any game can be replayed from its seed alone (agents that use their own randomness may still play differently).
+ * Alternatively the deals can be taken from a DeckCorpus, so that different tournaments play the same deals.
+ * Games are spread over all cores using a fork-join pool.
+ * Each thread reuses one deck for all the games it plays,
+ * and keeps the ReusableAgents of the games it has finished, to seat them again rather than create new agents.
+ **/
+public class Tournament{
+
+  /**Suppliers of the agents that may be seated in a game**/
+  private final List<Supplier<? extends Agent>> agents;
+  /**The smallest number of players in a game**/
+  private final int minPlayers;
+  /**The largest number of players in a game**/
+  private final int maxPlayers;
+  /**The seed from which the seed of each game is derived**/
+  private final long seed;
+  /**The deals to play, or null if each deal is shuffled from the seed of the game**/
+  private final DeckCorpus deals;
+  /**The time allowed for each action, in nanoseconds, or 0 for no limit**/
+  private long moveNanos;
+  /**The supplier of default agents, for actions that miss their deadline**/
+  private Supplier<? extends Agent> fallback;
+  /**The deck used by each thread**/
+  private final ThreadLocal<Stack<Card>> decks = ThreadLocal.withInitial(() -> new Stack<Card>());
+  /**The ReusableAgents of each thread that are not in a game, for each supplier**/
+  private final ThreadLocal<ArrayDeque<ReusableAgent>[]> idle = ThreadLocal.withInitial(this::newPool);
+
+  /**
+   * Creates a tournament.
+   * For each game, a number of players between minPlayers and maxPlayers is chosen,
+   * and each seat is filled by an agent from a randomly chosen supplier.
+   * @param minPlayers the smallest number of players in a game (at least 2)
+   * @param maxPlayers the largest number of players in a game (at most 5)
+   * @param seed the seed of the tournament
+   * @param agents suppliers of the agents to take part, each called when a seat needs a new agent
+   * @throws IllegalArgumentException if no agents are given, or the numbers of players are out of range
+   **/
+  public Tournament(int minPlayers, int maxPlayers, long seed, List<? extends Supplier<? extends Agent>> agents) throws IllegalArgumentException{
+    if(agents==null || agents.isEmpty() || minPlayers<2 || maxPlayers>5 || minPlayers>maxPlayers)
+      throw new IllegalArgumentException("incorrect parameters");
+    this.agents = List.copyOf(agents);
+    this.minPlayers = minPlayers;
+    this.maxPlayers = maxPlayers;
+    this.seed = seed;
+    this.deals = null;
+  }
+
+  /**
+   * Creates a tournament that plays the deals of a corpus.
+   * Game g plays deal g (modulo the size of the corpus), and its seed is simply g.
+   * The seed of the tournament determines the number of players and the agents in each game.
+   * @param deals the deals to play
+   * @param minPlayers the smallest number of players in a game (at least 2)
+   * @param maxPlayers the largest number of players in a game (at most 5)
+   * @param seed the seed of the tournament
+   * @param agents suppliers of the agents to take part, each called when a seat needs a new agent
+   * @throws IllegalArgumentException if the corpus is empty, no agents are given, or the numbers of players are out of range
+   **/
+  public Tournament(DeckCorpus deals, int minPlayers, int maxPlayers, long seed, List<? extends Supplier<? extends Agent>> agents) throws IllegalArgumentException{
+    if(deals==null || deals.size()==0 || agents==null || agents.isEmpty() || minPlayers<2 || maxPlayers>5 || minPlayers>maxPlayers)
+      throw new IllegalArgumentException("incorrect parameters");
+    this.agents = List.copyOf(agents);
+    this.minPlayers = minPlayers;
+    this.maxPlayers = maxPlayers;
+    this.seed = seed;
+    this.deals = deals;
+  }
+
+  /**
+   * Gives every agent a time limit for each action, as in Hanabi.setDeadline.
+   * @param nanos the time allowed for each action, in nanoseconds, or 0 for no limit
+   * @param fallback a supplier of the default agents that replace the actions that miss their deadline, such as BasicAgent::new
+   * @throws IllegalArgumentException if a limit is given without a supplier of default agents
+   **/
+  public void setDeadline(long nanos, Supplier<? extends Agent> fallback) throws IllegalArgumentException{
+    if(nanos>0 && fallback==null) throw new IllegalArgumentException("A default agent is required");
+    moveNanos = Math.max(nanos, 0);
+    this.fallback = fallback;
+  }
+
+  /**
+   * Gives the seed of a game in the tournament.
+   * @param game the number of the game, from 0
+   * @return the seed of the game
+   **/
+  public long gameSeed(int game){return deals==null?mix(seed+0x9E3779B97F4A7C15L*(game+1)):game;}
+
+  /**
+   * Plays the games of the tournament using all available cores.
+   * @param games the number of games to play
+   * @return the results of the games
+   **/
+  public Result run(int games){
+    return run(games, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Plays the games of the tournament in the given pool.
+   * @param games the number of games to play
+   * @param pool the pool whose threads play the games
+   * @return the results of the games
+   **/
+  public Result run(int games, ForkJoinPool pool){
+    return run(games, pool, null);
+  }
+
+  /**
+   * Plays the games of the tournament in the given pool, recording every game in a sink.
+   * The sink is not closed, so that it can be used for further games.
+   * @param games the number of games to play
+   * @param pool the pool whose threads play the games
+   * @param sink the sink that records the games (with their seeds as their ids), or null if the games are not to be recorded
+   * @return the results of the games
+   * @throws UncheckedIOException if the sink cannot record a game
+   **/
+  public Result run(int games, ForkJoinPool pool, GameRecordSink sink) throws UncheckedIOException{
+    return run(games, pool, sink, null);
+  }
+
+  /**
+   * Plays the games of the tournament in the given pool, recording every game in a sink and measuring every turn.
+   * @param games the number of games to play
+   * @param pool the pool whose threads play the games
+   * @param sink the sink that records the games (with their seeds as their ids), or null if the games are not to be recorded
+   * @param metrics the measurements to add the turns of every game to, or null if the turns are not to be measured
+   * @return the results of the games
+   * @throws UncheckedIOException if the sink cannot record a game
+   **/
+  public Result run(int games, ForkJoinPool pool, GameRecordSink sink, TurnMetrics metrics) throws UncheckedIOException{
+    long start = System.nanoTime();
+    Result r = pool.submit(() ->
+        IntStream.range(0, games).parallel().collect(Result::new, (res, g) -> res.add(gameSeed(g), playGame(gameSeed(g), sink, metrics)), Result::combine)
+      ).join();
+    r.nanos = System.nanoTime()-start;
+    return r;
+  }
+
+  /**
+   * Plays the game with the given seed.
+   * @param gameSeed the seed of the game, as given by gameSeed(int)
+   * @return the score of the game, or -1 if an agent made an illegal move or failed
+   **/
+  public int playGame(long gameSeed){
+    return playGame(gameSeed, null);
+  }
+
+  /**
+   * Plays the game with the given seed, recording it in a sink.
+   * @param gameSeed the seed of the game, as given by gameSeed(int)
+   * @param sink the sink that records the game, with its seed as its id, or null if the game is not to be recorded
+   * @return the score of the game, or -1 if an agent made an illegal move or failed
+   * @throws UncheckedIOException if the sink cannot record the game
+   **/
+  public int playGame(long gameSeed, GameRecordSink sink) throws UncheckedIOException{
+    return playGame(gameSeed, sink, null);
+  }
+
+  /**
+   * Plays the game with the given seed, recording it in a sink and measuring its turns.
+   * @param gameSeed the seed of the game, as given by gameSeed(int)
+   * @param sink the sink that records the game, with its seed as its id, or null if the game is not to be recorded
+   * @param metrics the measurements to add the turns of the game to, or null if the turns are not to be measured
+   * @return the score of the game, or -1 if an agent made an illegal move or failed
+   * @throws UncheckedIOException if the sink cannot record the game
+   **/
+  public int playGame(long gameSeed, GameRecordSink sink, TurnMetrics metrics) throws UncheckedIOException{
+    int[] kinds = new int[maxPlayers];
+    Agent[] players = seat(gameSeed, kinds);
+    try{
+      Hanabi game = game(gameSeed, players);
+      game.setMetrics(metrics);
+      return sink==null?game.play():game.play(gameSeed, sink);
+    }
+    catch(IOException e){throw new UncheckedIOException(e);}
+    catch(RuntimeException e){return -1;}
+    finally{release(players, kinds);}
+  }
+
+  /**
+   * Replays the game with the given seed, recording a description of it.
+   * @param gameSeed the seed of the game, as given by gameSeed(int)
+   * @param log a StringBuffer to which the description of the game is appended
+   * @return the score of the game, or -1 if an agent made an illegal move
+   **/
+  public int replay(long gameSeed, StringBuffer log){
+    int[] kinds = new int[maxPlayers];
+    Agent[] players = seat(gameSeed, kinds);
+    try{return game(gameSeed, players).play(log);}
+    finally{release(players, kinds);}
+  }
+
+  //chooses the agents for the game with the given seed, taking idle agents of this thread where there are any,
+  //and records the supplier of each seat in kinds
+  private Agent[] seat(long gameSeed, int[] kinds){
+    long s = mix(deals==null?gameSeed:seed+gameSeed);
+    int numPlayers = minPlayers+(int)Long.remainderUnsigned(s, maxPlayers-minPlayers+1);
+    ArrayDeque<ReusableAgent>[] pool = idle.get();
+    Agent[] players = new Agent[numPlayers];
+    for(int i = 0; i<numPlayers; i++){
+      s = mix(s);
+      kinds[i] = (int)Long.remainderUnsigned(s, agents.size());
+      Agent a = pool[kinds[i]].poll();
+      players[i] = a!=null?a:agents.get(kinds[i]).get();
+    }
+    return players;
+  }
+
+  //returns the ReusableAgents of a finished game to this thread's idle agents
+  private void release(Agent[] players, int[] kinds){
+    ArrayDeque<ReusableAgent>[] pool = idle.get();
+    for(int i = 0; i<players.length; i++)
+      if(players[i] instanceof ReusableAgent) pool[kinds[i]].push((ReusableAgent)players[i]);
+  }
+
+  //creates the idle agents of a thread, with none for each supplier
+  @SuppressWarnings({"unchecked","rawtypes"})
+  private ArrayDeque<ReusableAgent>[] newPool(){
+    ArrayDeque<ReusableAgent>[] pool = new ArrayDeque[agents.size()];
+    for(int i = 0; i<pool.length; i++) pool[i] = new ArrayDeque<ReusableAgent>();
+    return pool;
+  }
+
+  //sets up the game with the given seed and agents
+  private Hanabi game(long gameSeed, Agent[] players){
+    Stack<Card> deck = decks.get();
+    if(deals==null) Card.shuffle(deck, new SplittableRandom(gameSeed));
+    else deals.deck((int)Long.remainderUnsigned(gameSeed, deals.size()), deck);
+    Hanabi game = new Hanabi(players, deck);
+    if(moveNanos>0) game.setDeadline(moveNanos, fallback);
+    return game;
+  }
+
+  //the SplitMix64 finaliser, used to spread seeds
+  private static long mix(long z){
+    z = (z^(z>>>30))*0xBF58476D1CE4E5B9L;
+    z = (z^(z>>>27))*0x94D049BB133111EBL;
+    return z^(z>>>31);
+  }
+
+  /**
+   * The results of a tournament: the distribution of scores and the rate at which games were played.
+   **/
+  public static class Result{
+    /**The number of games with each score, with failed games counted at index 0 and a score of s at index s+1**/
+    private final long[] counts = new long[27];
+    private long games;
+    private long total;
+    private long firstFailure = -1;
+    private long nanos;
+
+    //records the score of a game
+    private void add(long gameSeed, int score){
+      counts[score+1]++;
+      games++;
+      if(score>=0) total += score;
+      else if(firstFailure==-1) firstFailure = gameSeed;
+    }
+
+    //adds the results of another part of the tournament
+    private void combine(Result r){
+      for(int i = 0; i<counts.length; i++) counts[i] += r.counts[i];
+      games += r.games;
+      total += r.total;
+      if(firstFailure==-1) firstFailure = r.firstFailure;
+    }
+
+    /**@return the number of games played**/
+    public long getGames(){return games;}
+
+    /**@return the number of games that ended with the given score, or -1 for games that failed**/
+    public long getCount(int score){return counts[score+1];}
+
+    /**@return the number of games that failed**/
+    public long getFailures(){return counts[0];}
+
+    /**@return the seed of a failed game, or -1 if no game failed**/
+    public long getFailedGameSeed(){return firstFailure;}
+
+    /**@return the mean score of the games that did not fail**/
+    public double getMeanScore(){return games==counts[0]?0:(double)total/(games-counts[0]);}
+
+    /**@return the number of games played per second**/
+    public double getGamesPerSecond(){return nanos==0?0:games*1e9/nanos;}
+
+    /**
+     * A summary of the results, with the distribution of scores.
+     * @return a description of the results
+     **/
+    public String toString(){
+      StringBuilder b = new StringBuilder();
+      b.append(String.format("Games: %d in %.2fs (%.1f games/sec)%n", games, nanos/1e9, getGamesPerSecond()));
+      b.append(String.format("Mean score: %.3f%n", getMeanScore()));
+      if(counts[0]>0) b.append("Failed games: ").append(counts[0]).append(" (e.g. seed ").append(firstFailure).append(")\n");
+      for(int s = 0; s<=25; s++){
+        if(counts[s+1]==0) continue;
+        b.append(String.format("%2d: %8d %6.2f%%%n", s, counts[s+1], 100.0*counts[s+1]/games));
+      }
+      return b.toString();
+    }
+  }
+
+  /**
+   * Runs a tournament of BasicAgent and Agent21958958, in games of 2 to 5 players.
+   * The optional arguments are the number of games, the seed of the tournament, and a deck corpus file to take the deals from.
+   * Every turn is measured, and the time taken by each agent and by the engine is reported after the results.
+   * */
+  public static void main(String[] args) throws java.io.IOException{
+    int games = args.length>0?Integer.parseInt(args[0]):10000;
+    long seed = args.length>1?Long.parseLong(args[1]):System.nanoTime();
+    Tournament t = args.length>2
+      ? new Tournament(DeckCorpus.open(java.nio.file.Paths.get(args[2])), 2, 5, seed, List.of(agents.BasicAgent::new, agents.Agent21958958::new))
+      : new Tournament(2, 5, seed, List.of(agents.BasicAgent::new, agents.Agent21958958::new));
+    System.out.println("Tournament seed: "+seed);
+    TurnMetrics metrics = new TurnMetrics();
+    System.out.print(t.run(games, ForkJoinPool.commonPool(), null, metrics));
+    System.out.print(metrics);
+  }
+}
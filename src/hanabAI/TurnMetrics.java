@@ -0,0 +1,220 @@
+package hanabAI;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of the turns of games, to show whether time is spent in the engine or in the agents.
+ * For each kind of agent (by class), the time taken by doAction is kept in a histogram,
+ * along with the bytes allocated by the thread during the call, where the JVM can count them.
+ * The time the engine spends in hideHand and nextState is kept separately.
+ * The counters are striped, so one instance can be shared by all the games of a parallel tournament with little contention.
+ **/
+public class TurnMetrics{
+
+  /**The thread allocation counter, or null if the JVM does not provide one**/
+  private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+  /**The measurements of each kind of agent**/
+  private final Map<Class<?>,Stats> agents = new ConcurrentHashMap<Class<?>,Stats>();
+  /**The measurements of the engine**/
+  private final Stats engine = new Stats("Engine");
+
+  //finds the thread allocation counter
+  private static com.sun.management.ThreadMXBean threads(){
+    try{
+      java.lang.management.ThreadMXBean t = ManagementFactory.getThreadMXBean();
+      if(t instanceof com.sun.management.ThreadMXBean){
+        com.sun.management.ThreadMXBean s = (com.sun.management.ThreadMXBean)t;
+        if(s.isThreadAllocatedMemorySupported()){
+          if(!s.isThreadAllocatedMemoryEnabled()) s.setThreadAllocatedMemoryEnabled(true);
+          return s;
+        }
+      }
+    }
+    catch(RuntimeException | LinkageError e){}
+    return null;
+  }
+
+  /**
+   * Gives the number of bytes allocated by the current thread so far.
+   * @return the bytes allocated by the thread, or -1 if they cannot be counted
+   **/
+  public static long allocatedBytes(){
+    return THREADS==null?-1:THREADS.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Records a decision of an agent.
+   * @param agent the agent that made the decision
+   * @param nanos the time taken by doAction
+   * @param bytes the bytes allocated by doAction, or a negative number if they were not counted
+   **/
+  public void agentTurn(Agent agent, long nanos, long bytes){
+    Stats s = agents.get(agent.getClass());
+    if(s==null) s = agents.computeIfAbsent(agent.getClass(), c -> new Stats(c.getName()));
+    s.add(nanos, bytes);
+  }
+
+  /**
+   * Records that an agent missed the deadline for an action, and was replaced by the default agent.
+   * @param agent the agent that missed the deadline
+   **/
+  public void missedDeadline(Agent agent){
+    Stats s = agents.get(agent.getClass());
+    if(s==null) s = agents.computeIfAbsent(agent.getClass(), c -> new Stats(c.getName()));
+    s.misses.increment();
+  }
+
+  /**
+   * Records the work of the engine in a turn.
+   * @param nanos the time taken to hide the hand of the player and to make the next state
+   **/
+  public void engineTurn(long nanos){
+    engine.add(nanos, -1);
+  }
+
+  /**
+   * Gives the measurements of one kind of agent.
+   * @param agent the class of the agent
+   * @return the measurements, or null if no agent of that class has been measured
+   **/
+  public Stats getAgentStats(Class<? extends Agent> agent){return agents.get(agent);}
+
+  /**@return the measurements of the engine**/
+  public Stats getEngineStats(){return engine;}
+
+  /**
+   * A summary of the measurements, with a line for each kind of agent and one for the engine.
+   * @return a description of the measurements
+   **/
+  public String toString(){
+    StringBuilder b = new StringBuilder();
+    for(Stats s: toMap().values()) b.append(s).append('\n');
+    b.append(engine).append('\n');
+    return b.toString();
+  }
+
+  //the measurements of the agents, by name
+  private Map<String,Stats> toMap(){
+    Map<String,Stats> m = new TreeMap<String,Stats>();
+    for(Stats s: agents.values()) m.put(s.name, s);
+    return m;
+  }
+
+  /**
+   * The measurements of the turns of one kind of agent, or of the engine.
+   * Times are kept in a histogram with four buckets for each power of two nanoseconds,
+   * so percentiles are accurate to within 25%.
+   **/
+  public static class Stats{
+    /**The number of buckets in the histogram**/
+    private static final int BUCKETS = 64*4;
+
+    private final String name;
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder counted = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAccumulator maxBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder misses = new LongAdder();
+
+    //creates empty measurements
+    private Stats(String name){
+      this.name = name;
+      for(int i = 0; i<BUCKETS; i++) histogram[i] = new LongAdder();
+    }
+
+    //records a turn
+    private void add(long n, long b){
+      if(n<0) n = 0;
+      histogram[bucket(n)].increment();
+      count.increment();
+      nanos.add(n);
+      maxNanos.accumulate(n);
+      if(b>=0){
+        counted.increment();
+        bytes.add(b);
+        maxBytes.accumulate(b);
+      }
+    }
+
+    //the bucket of a time: the position of its highest bit, and the two bits below it
+    private static int bucket(long n){
+      if(n<4) return (int)n;
+      int high = 63-Long.numberOfLeadingZeros(n);
+      return high*4+(int)((n>>>(high-2))&3);
+    }
+
+    //the largest time in a bucket
+    private static long bucketLimit(int i){
+      if(i<4) return i;
+      int high = i/4;
+      if(high>=63) return Long.MAX_VALUE;
+      return (1L<<high)+((long)(i%4+1)<<(high-2))-1;
+    }
+
+    /**@return the name of the class of agent, or Engine**/
+    public String getName(){return name;}
+
+    /**@return the number of turns measured**/
+    public long getCount(){return count.sum();}
+
+    /**@return the mean time of a turn, in nanoseconds**/
+    public double getMeanNanos(){
+      long c = count.sum();
+      return c==0?0:(double)nanos.sum()/c;
+    }
+
+    /**@return the longest time of a turn, in nanoseconds**/
+    public long getMaxNanos(){return maxNanos.get();}
+
+    /**
+     * Gives a percentile of the times of the turns, from the histogram.
+     * @param p the percentile, from 0 to 100
+     * @return an upper bound on the time of that percentile of turns, in nanoseconds
+     **/
+    public long getPercentileNanos(double p){
+      long[] h = new long[BUCKETS];
+      long total = 0;
+      for(int i = 0; i<BUCKETS; i++) total += h[i] = histogram[i].sum();
+      long rank = (long)Math.ceil(total*p/100);
+      long seen = 0;
+      for(int i = 0; i<BUCKETS; i++){
+        seen += h[i];
+        if(seen>=rank && seen>0) return Math.min(bucketLimit(i), getMaxNanos());
+      }
+      return 0;
+    }
+
+    /**@return the mean number of bytes allocated in a turn, or -1 if allocation was not counted**/
+    public double getMeanBytes(){
+      long c = counted.sum();
+      return c==0?-1:(double)bytes.sum()/c;
+    }
+
+    /**@return the largest number of bytes allocated in a turn**/
+    public long getMaxBytes(){return maxBytes.get();}
+
+    /**@return the number of actions returned after their deadline**/
+    public long getMissedDeadlines(){return misses.sum();}
+
+    /**
+     * A one line summary of the measurements.
+     * @return a description of the measurements
+     **/
+    public String toString(){
+      String s = String.format("%s: %d turns, mean %.1fus, p50 %.1fus, p99 %.1fus, max %.1fus",
+        name, getCount(), getMeanNanos()/1e3, getPercentileNanos(50)/1e3, getPercentileNanos(99)/1e3, getMaxNanos()/1e3);
+      if(counted.sum()>0) s += String.format(", %.0f bytes/turn (max %d)", getMeanBytes(), getMaxBytes());
+      if(misses.sum()>0) s += ", "+misses.sum()+" missed deadlines";
+      return s;
+    }
+  }
+}